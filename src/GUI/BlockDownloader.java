@@ -0,0 +1,366 @@
+package GUI;
+
+import core.Block;
+import core.BlockHeader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import utils.Serializer;
+
+/**
+ * Download de blocos de vários vizinhos em paralelo.
+ * <p>
+ * O intervalo em falta (já validado pelos cabeçalhos) é dividido em lotes de
+ * {@link #CHUNK} blocos, pedidos a vizinhos diferentes ao mesmo tempo:
+ * <ul>
+ * <li><b>Pontuação:</b> cada vizinho tem uma média exponencial do débito
+ * (bytes/ms) e da latência dos seus pedidos; cada lote vai para o vizinho com
+ * o menor tempo previsto (latência + tamanho do lote / débito), até
+ * {@link #MAX_IN_FLIGHT} pedidos cada. Um vizinho ainda sem medições é
+ * experimentado primeiro.</li>
+ * <li><b>Pedidos parados:</b> um lote sem resposta ao fim de
+ * {@link #MIN_STALL_MS} (ou 3x a latência do vizinho) é pedido também a outro
+ * vizinho; fica a primeira resposta.</li>
+ * <li><b>Ordem:</b> os lotes chegam por qualquer ordem mas são entregues à
+ * validação ({@link BlockSink}) por ordem de ID.</li>
+ * <li><b>Vizinhos inválidos:</b> um bloco que não corresponde ao seu
+ * cabeçalho (outro fork ou dados adulterados), que falha a validação sem
+ * estado ({@link BlockPipeline#verify(Block)}, feita nas threads do download)
+ * ou {@link #MAX_FAILURES} erros seguidos afastam o vizinho desta
+ * sincronização.</li>
+ * </ul>
+ * Created on 18/10/2026, 22:18:44
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public class BlockDownloader {
+
+    /**
+     * Número de blocos de cada pedido.
+     */
+    public static final int CHUNK = 16;
+    /**
+     * Número máximo de pedidos simultâneos a um vizinho.
+     */
+    static final int MAX_IN_FLIGHT = 2;
+    /**
+     * Tempo mínimo sem resposta até um lote ser pedido a outro vizinho.
+     */
+    static final long MIN_STALL_MS = 2000;
+    /**
+     * Erros seguidos até um vizinho ser afastado.
+     */
+    static final int MAX_FAILURES = 3;
+    /**
+     * Peso das medições novas nas médias dos vizinhos.
+     */
+    static final double ALPHA = 0.3;
+
+    /**
+     * Destino dos blocos descarregados (chamado por ordem de ID, na thread
+     * de {@link #run()}).
+     */
+    public interface BlockSink {
+
+        void accept(Block block) throws Exception;
+    }
+
+    /**
+     * Vizinho e as suas medições.
+     */
+    static final class Peer {
+
+        final RemoteNodeInterface node;
+        final String name;
+        double rate = -1;      // bytes por ms (-1: sem medições)
+        double latency = -1;   // ms por pedido
+        int inFlight;
+        int failures;
+        int blocks;
+        long bytes;
+        boolean banned;
+
+        Peer(RemoteNodeInterface node) {
+            this.node = node;
+            String n;
+            try {
+                n = node.getAdress();
+            } catch (Exception e) {
+                n = String.valueOf(node);
+            }
+            this.name = n;
+        }
+
+        /**
+         * @param chunkBytes Tamanho previsto do lote (bytes).
+         * @return Tempo previsto para o vizinho entregar o lote (ms; menor é
+         * melhor, 0 sem medições).
+         */
+        double expectedMs(double chunkBytes) {
+            return rate <= 0 ? 0 : latency + chunkBytes / rate;
+        }
+
+        long stallTimeout() {
+            return latency < 0 ? MIN_STALL_MS : Math.max(MIN_STALL_MS, (long) (3 * latency));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d blocos, %.1f KB/s, %.0f ms/pedido%s",
+                    name, blocks, rate < 0 ? 0 : rate * 1000 / 1024, Math.max(latency, 0), banned ? " (afastado)" : "");
+        }
+    }
+
+    /**
+     * Lote de blocos e os pedidos em curso.
+     */
+    static final class Chunk {
+
+        final int start;
+        final int count;
+        final Map<Peer, Long> requests = new HashMap<>();
+        List<Block> blocks;
+
+        Chunk(int start, int count) {
+            this.start = start;
+            this.count = count;
+        }
+    }
+
+    private final List<Peer> peers = new ArrayList<>();
+    private final List<BlockHeader> headers;
+    private final int first;
+    private final int end;
+    private final BlockSink sink;
+
+    // lotes por pedir, em curso e recebidos (por ID do primeiro bloco)
+    private final TreeMap<Integer, Chunk> pending = new TreeMap<>();
+    private final TreeMap<Integer, Chunk> inFlight = new TreeMap<>();
+    private final TreeMap<Integer, Chunk> received = new TreeMap<>();
+
+    /**
+     * @param peers Vizinhos a quem pedir os blocos.
+     * @param headers Cabeçalhos validados dos blocos a descarregar (IDs
+     * seguidos).
+     * @param sink Destino dos blocos, por ordem.
+     */
+    public BlockDownloader(Collection<RemoteNodeInterface> peers, List<BlockHeader> headers, BlockSink sink) {
+        for (RemoteNodeInterface node : peers) {
+            this.peers.add(new Peer(node));
+        }
+        this.headers = headers;
+        this.first = headers.isEmpty() ? 0 : headers.get(0).getID();
+        this.end = first + headers.size();
+        this.sink = sink;
+        for (int start = first; start < end; start += CHUNK) {
+            pending.put(start, new Chunk(start, Math.min(CHUNK, end - start)));
+        }
+    }
+
+    /**
+     * Descarrega todos os blocos e entrega-os ao destino por ordem.
+     *
+     * @return Número de blocos entregues.
+     * @throws Exception Se o destino rejeitar um bloco ou não houver vizinhos
+     * que tenham os blocos em falta.
+     */
+    public int run() throws Exception {
+        ExecutorService pool = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "block-download");
+            t.setDaemon(true);
+            return t;
+        });
+        int next = first;
+        try {
+            while (next < end) {
+                List<Block> ready = new ArrayList<>();
+                synchronized (this) {
+                    schedule(pool);
+                    Chunk c;
+                    while ((c = received.get(next)) != null) {
+                        received.remove(next);
+                        ready.addAll(c.blocks);
+                        next += c.blocks.size();
+                    }
+                    if (ready.isEmpty()) {
+                        if (pending.isEmpty() && inFlight.isEmpty() && received.isEmpty()) {
+                            throw new Exception("Sync Error: no peer could send block " + next + ".");
+                        }
+                        if (inFlight.isEmpty() && !canRequest()) {
+                            throw new Exception("Sync Error: no peers left to download block " + next + ".");
+                        }
+                        wait(50);
+                    }
+                }
+                // validação fora do lock: as respostas continuam a chegar
+                for (Block b : ready) {
+                    sink.accept(b);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return next - first;
+    }
+
+    /**
+     * @return Medições dos vizinhos (para o registo da sincronização).
+     */
+    public synchronized List<String> getPeerReport() {
+        List<String> report = new ArrayList<>();
+        for (Peer p : peers) {
+            report.add(p.toString());
+        }
+        return report;
+    }
+
+    private boolean canRequest() {
+        for (Peer p : peers) {
+            if (!p.banned) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Distribui os lotes por pedir pelos melhores vizinhos livres e volta a
+     * pedir os lotes parados a outro vizinho. Chamado com o lock.
+     */
+    private void schedule(ExecutorService pool) {
+        long now = System.currentTimeMillis();
+        // 1. lotes parados: pedir também a outro vizinho
+        for (Chunk c : inFlight.values()) {
+            boolean stalled = true;
+            for (Map.Entry<Peer, Long> r : c.requests.entrySet()) {
+                if (now - r.getValue() < r.getKey().stallTimeout()) {
+                    stalled = false;
+                }
+            }
+            if (stalled) {
+                Peer p = bestPeer(c);
+                if (p != null) {
+                    request(pool, p, c, now);
+                }
+            }
+        }
+        // 2. lotes novos, pelo ID mais baixo (a validação é por ordem)
+        while (!pending.isEmpty()) {
+            Chunk c = pending.firstEntry().getValue();
+            Peer p = bestPeer(c);
+            if (p == null) {
+                break;
+            }
+            pending.remove(c.start);
+            inFlight.put(c.start, c);
+            request(pool, p, c, now);
+        }
+    }
+
+    /**
+     * @return O vizinho livre com o menor tempo previsto que ainda não tem o
+     * pedido deste lote, ou null.
+     */
+    private Peer bestPeer(Chunk c) {
+        // tamanho médio dos blocos já recebidos de todos os vizinhos
+        long bytes = 0;
+        int blocks = 0;
+        for (Peer p : peers) {
+            bytes += p.bytes;
+            blocks += p.blocks;
+        }
+        double chunkBytes = blocks == 0 ? 0 : (double) bytes / blocks * c.count;
+        Peer best = null;
+        for (Peer p : peers) {
+            if (!p.banned && p.inFlight < MAX_IN_FLIGHT && !c.requests.containsKey(p)
+                    && (best == null || p.expectedMs(chunkBytes) < best.expectedMs(chunkBytes))) {
+                best = p;
+            }
+        }
+        return best;
+    }
+
+    private void request(ExecutorService pool, Peer p, Chunk c, long now) {
+        p.inFlight++;
+        c.requests.put(p, now);
+        pool.execute(() -> fetch(p, c));
+    }
+
+    /**
+     * Executado numa thread do pool: pede um lote a um vizinho.
+     */
+    private void fetch(Peer p, Chunk c) {
+        long t0 = System.nanoTime();
+        List<Block> blocks = new ArrayList<>();
+        long bytes = 0;
+        boolean mismatch = false;
+        Exception error = null;
+        try {
+            List<byte[]> data = p.node.getBlocks(c.start, c.count);
+            for (byte[] d : data) {
+                if (blocks.size() == c.count) {
+                    break;
+                }
+                Block b = (Block) Serializer.byteArrayToObject(d);
+                BlockHeader h = headers.get(c.start + blocks.size() - first);
+                if (b.getID() != h.getID() || !Arrays.equals(b.getCurrentHash(), h.getCurrentHash())) {
+                    mismatch = true;
+                    break;
+                }
+                // validação sem estado aqui, em paralelo entre lotes
+                try {
+                    BlockPipeline.verify(b);
+                } catch (Exception e) {
+                    mismatch = true;
+                    break;
+                }
+                blocks.add(b);
+                bytes += d.length;
+            }
+            if (blocks.isEmpty() && !mismatch) {
+                error = new Exception("no blocks from " + c.start);
+            }
+        } catch (Exception e) {
+            error = e;
+        }
+        double ms = Math.max((System.nanoTime() - t0) / 1e6, 0.001);
+        synchronized (this) {
+            p.inFlight--;
+            c.requests.remove(p);
+            if (mismatch || error != null) {
+                p.failures++;
+                if (mismatch || p.failures >= MAX_FAILURES) {
+                    p.banned = true;
+                    System.out.println("SYNC: vizinho afastado " + p.name + " (" + (mismatch ? "bloco inválido ou que não corresponde ao cabeçalho" : error.getMessage()) + ")");
+                }
+                if (c.requests.isEmpty() && inFlight.remove(c.start) != null) {
+                    pending.put(c.start, c);
+                }
+            } else {
+                p.failures = 0;
+                p.blocks += blocks.size();
+                p.bytes += bytes;
+                p.latency = p.latency < 0 ? ms : (1 - ALPHA) * p.latency + ALPHA * ms;
+                double rate = bytes / ms;
+                p.rate = p.rate < 0 ? rate : (1 - ALPHA) * p.rate + ALPHA * rate;
+                // a primeira resposta a um lote é a que fica
+                if (inFlight.remove(c.start) != null) {
+                    c.blocks = blocks;
+                    received.put(c.start, c);
+                    if (blocks.size() < c.count) {
+                        // resposta parcial (limite de bytes): o resto é outro lote
+                        int rest = c.start + blocks.size();
+                        pending.put(rest, new Chunk(rest, c.count - blocks.size()));
+                    }
+                }
+            }
+            notifyAll();
+        }
+    }
+}
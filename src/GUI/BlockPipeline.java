@@ -0,0 +1,299 @@
+package GUI;
+
+import SaudeCerteira.SaudeTransaction;
+import core.Block;
+import core.ChainUpdate;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import utils.Serializer;
+
+/**
+ * Receção de blocos em andares (pipeline), fora das threads RMI.
+ * <p>
+ * Cada bloco recebido passa por:
+ * <ol>
+ * <li><b>Descodificação e validação sem estado</b> num conjunto de threads
+ * (uma por core): Proof of Work, Merkle Root e assinaturas das transações
+ * ({@link #verify(Block)}). Não depende da cadeia, por isso vários blocos são
+ * validados ao mesmo tempo.</li>
+ * <li><b>Escrita na cadeia</b> numa única thread e pela ordem de chegada
+ * ({@link Committer}): encadeamento, sequência, dificuldade, ramos
+ * concorrentes e disco. Um bloco que chega antes do anterior fica no
+ * {@link OrphanPool} e entra logo a seguir ao pai.</li>
+ * <li><b>Pós-processamento</b> numa thread própria ({@link PostProcessor}):
+ * propagação, carteiras, mempool e GUI.</li>
+ * </ol>
+ * As filas entre os andares são limitadas. Com a fila da escrita cheia o
+ * bloco é recusado logo na chamada RMI (volta a chegar por outro vizinho ou
+ * pela sincronização), em vez de deixar as threads RMI à espera do disco.
+ * Created on 18/10/2026, 22:47:10
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public class BlockPipeline {
+
+    /**
+     * Máximo de blocos recebidos à espera da escrita (a validar ou validados).
+     */
+    public static final int MAX_PENDING = 64;
+
+    /**
+     * Máximo de blocos aceites à espera do pós-processamento.
+     */
+    public static final int MAX_POST = 64;
+
+    /**
+     * Escrita de um bloco já validado na cadeia local.
+     */
+    @FunctionalInterface
+    public interface Committer {
+
+        /**
+         * @param b Bloco com a validação sem estado feita.
+         * @return O que mudou na cadeia (órfãos: {@link ChainUpdate.Status#ORPHAN}).
+         * @throws Exception Se o bloco não pode entrar na cadeia.
+         */
+        ChainUpdate commit(Block b) throws Exception;
+    }
+
+    /**
+     * Trabalho feito depois de um bloco ser aceite (na cadeia principal ou
+     * num ramo lateral).
+     */
+    @FunctionalInterface
+    public interface PostProcessor {
+
+        /**
+         * @param update O que mudou na cadeia.
+         * @param data Bytes do bloco, tal como foram recebidos.
+         * @throws Exception Erros são registados e não afetam a cadeia.
+         */
+        void accept(ChainUpdate update, byte[] data) throws Exception;
+    }
+
+    /**
+     * Um bloco no pipeline: os bytes e o resultado da validação.
+     */
+    private static final class Entry {
+
+        final byte[] data;
+        final CompletableFuture<Block> verified = new CompletableFuture<>();
+
+        Entry(byte[] data) {
+            this.data = data;
+        }
+    }
+
+    private final Committer committer;
+    private final PostProcessor post;
+
+    // andar 1: validação em paralelo
+    private final ExecutorService verifyPool;
+    // entre os andares 1 e 2: ordem de chegada
+    private final BlockingQueue<Entry> commitQueue = new ArrayBlockingQueue<>(MAX_PENDING);
+    // andar 3: pós-processamento
+    private final ExecutorService postExecutor;
+    // blocos à espera do anterior (só usado pela thread de escrita)
+    private final OrphanPool orphans = new OrphanPool();
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param committer Escrita na cadeia (uma thread, por ordem de chegada).
+     * @param post Pós-processamento dos blocos aceites.
+     */
+    public BlockPipeline(Committer committer, PostProcessor post) {
+        this.committer = committer;
+        this.post = post;
+        int cores = Runtime.getRuntime().availableProcessors();
+        // fila cheia: a validação corre na thread que entregou o bloco
+        this.verifyPool = new ThreadPoolExecutor(cores, cores, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING), daemon("block-verify"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        // fila cheia: a escrita espera pelo pós-processamento
+        this.postExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_POST), daemon("block-post"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        Thread commitThread = daemon("block-commit").newThread(this::commitLoop);
+        commitThread.start();
+    }
+
+    /**
+     * Entrega um bloco recebido da rede. Não espera pela validação nem pelo
+     * disco.
+     *
+     * @param blockData Bytes do bloco serializado.
+     * @return false se o pipeline está cheio e o bloco foi recusado.
+     */
+    public boolean submit(byte[] blockData) {
+        Entry e = new Entry(blockData);
+        // a ordem na fila da escrita é a ordem de chegada
+        synchronized (commitQueue) {
+            if (!commitQueue.offer(e)) {
+                dropped.incrementAndGet();
+                System.out.println("Pipeline cheio: bloco recusado (" + MAX_PENDING + " blocos pendentes).");
+                return false;
+            }
+        }
+        try {
+            verifyPool.execute(() -> {
+                try {
+                    Block b = (Block) Serializer.byteArrayToObject(blockData);
+                    verify(b);
+                    e.verified.complete(b);
+                } catch (Throwable ex) {
+                    e.verified.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            e.verified.completeExceptionally(ex);
+        }
+        return true;
+    }
+
+    /**
+     * Validação sem estado de um bloco: não lê a cadeia nem o disco.
+     *
+     * @param b Bloco recebido.
+     * @throws Exception Se o Proof of Work, a Merkle Root ou uma assinatura
+     * forem inválidos.
+     */
+    public static void verify(Block b) throws Exception {
+        if (!b.isValid()) {
+            throw new Exception("Security Alert: Invalid Block " + b.getID() + " (PoW failed or Data corrupted).");
+        }
+        if (!b.isMerkleRootValid()) {
+            throw new Exception("Security Alert: Invalid Block " + b.getID() + " (Merkle root does not match the data).");
+        }
+        for (Object elem : b.getData().getElements()) {
+            if (elem instanceof SaudeTransaction && !((SaudeTransaction) elem).isSignatureValid()) {
+                throw new Exception("Security Alert: Invalid signature in block " + b.getID() + " (" + elem + ").");
+            }
+        }
+    }
+
+    /**
+     * Andar 2: escreve os blocos validados, um de cada vez e por ordem.
+     */
+    private void commitLoop() {
+        while (true) {
+            Entry e;
+            try {
+                e = commitQueue.take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            Block b;
+            try {
+                b = e.verified.join();
+            } catch (CompletionException ex) {
+                rejected.incrementAndGet();
+                System.out.println("Bloco rejeitado: " + ex.getCause().getMessage());
+                continue;
+            }
+            commit(b, e.data);
+        }
+    }
+
+    /**
+     * Escreve um bloco e, se for aceite (também num ramo lateral), os órfãos
+     * que esperavam por ele (e os filhos destes).
+     */
+    private void commit(Block first, byte[] firstData) {
+        ArrayDeque<OrphanPool.Orphan> todo = new ArrayDeque<>();
+        todo.add(new OrphanPool.Orphan(first, firstData, 0));
+        while (!todo.isEmpty()) {
+            OrphanPool.Orphan o = todo.poll();
+            Block b = o.block;
+            ChainUpdate update;
+            try {
+                update = committer.commit(b);
+            } catch (Exception ex) {
+                rejected.incrementAndGet();
+                System.out.println("Nota no processamento do bloco: " + ex.getMessage());
+                continue;
+            }
+            if (update.getStatus() == ChainUpdate.Status.ORPHAN) {
+                if (orphans.add(b, o.data)) {
+                    System.out.println("Bloco " + b.getID() + " órfão, à espera do anterior (" + orphans + ").");
+                }
+                continue;
+            }
+            if (!update.isAccepted()) {
+                continue;
+            }
+            accepted.incrementAndGet();
+            postExecutor.execute(() -> {
+                try {
+                    post.accept(update, o.data);
+                } catch (Exception ex) {
+                    System.out.println("Aviso: Erro no pós-processamento do bloco " + b.getID() + ": " + ex.getMessage());
+                }
+            });
+            // os órfãos deste bloco já têm pai
+            todo.addAll(orphans.take(b.getCurrentHash()));
+        }
+    }
+
+    /**
+     * Volta a entregar os órfãos de um bloco que entrou na cadeia por outro
+     * caminho (ex: {@link ChainSync}).
+     *
+     * @param parentHash Hash do bloco.
+     * @return Número de órfãos entregues.
+     */
+    public int releaseOrphans(byte[] parentHash) {
+        List<OrphanPool.Orphan> children = orphans.take(parentHash);
+        for (OrphanPool.Orphan o : children) {
+            submit(o.data);
+        }
+        return children.size();
+    }
+
+    /**
+     * @return Os blocos órfãos.
+     */
+    public OrphanPool getOrphans() {
+        return orphans;
+    }
+
+    /**
+     * @return Blocos à espera da escrita.
+     */
+    public int getPending() {
+        return commitQueue.size();
+    }
+
+    /**
+     * @return Contadores: aceites, rejeitados, recusados (pipeline cheio) e
+     * órfãos.
+     */
+    @Override
+    public String toString() {
+        return "BlockPipeline[accepted " + accepted + ", rejected " + rejected
+                + ", dropped " + dropped + ", pending " + getPending()
+                + ", orphans " + orphans.size() + "]";
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
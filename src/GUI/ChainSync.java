@@ -0,0 +1,231 @@
+package GUI;
+
+import core.Block;
+import core.BlockChain;
+import core.BlockHeader;
+import core.ChainTip;
+import core.ChainUpdate;
+import java.io.FileNotFoundException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Sincronização incremental da Blockchain com um nó vizinho (headers-first).
+ * <p>
+ * Substitui o download da pasta de blocos inteira (ZIP) por um protocolo em
+ * que o custo é proporcional ao número de blocos em falta:
+ * <ol>
+ * <li><b>Topo:</b> {@link RemoteNodeInterface#getChainTip()} - só a altura, o
+ * trabalho acumulado e o último cabeçalho do vizinho.</li>
+ * <li><b>Antepassado comum:</b> o vizinho procura o último bloco em comum no
+ * localizador desta cadeia ({@link BlockChain#getLocator()}, O(log n)
+ * cabeçalhos).</li>
+ * <li><b>Cabeçalhos:</b> os cabeçalhos em falta são descarregados e validados
+ * (encadeamento, Proof of Work, dificuldade e timestamp) antes de qualquer
+ * bloco.</li>
+ * <li><b>Blocos:</b> só os blocos em falta, pedidos em paralelo a todos os
+ * vizinhos ({@link BlockDownloader}) e entregues por ordem a
+ * {@link BlockChain#processBlock(Block)}. Um fork local só é desfeito quando
+ * o ramo do vizinho, já validado, tem mais trabalho; se um bloco falhar a
+ * meio da troca, a cadeia anterior é reposta.</li>
+ * </ol>
+ * Cada mudança da cadeia principal ({@link ChainUpdate}) segue para o mesmo
+ * pós-processamento dos blocos recebidos da rede (carteiras e mempool).
+ * Uma cadeia com outro Genesis nunca substitui a cadeia local.
+ * Created on 18/10/2026, 21:52:30
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public class ChainSync {
+
+    private final RemoteNodeInterface node;
+    private final Collection<RemoteNodeInterface> peers;
+    private final Nodelistener listener;
+    private final Object lock;
+    private final Consumer<ChainUpdate> onUpdate;
+
+    // cadeia local durante o download (null: cadeia nova)
+    private BlockChain chain;
+
+    /**
+     * @param node Vizinho de onde são descarregados os cabeçalhos.
+     * @param listener Eventos para a GUI (pode ser null).
+     * @param lock Objeto que protege a cadeia local (o mesmo da receção de
+     * blocos).
+     * @param onUpdate Carteiras e mempool depois de cada mudança da cadeia.
+     */
+    public ChainSync(RemoteNodeInterface node, Nodelistener listener, Object lock, Consumer<ChainUpdate> onUpdate) {
+        this(node, List.of(node), listener, lock, onUpdate);
+    }
+
+    /**
+     * @param node Vizinho de onde são descarregados os cabeçalhos.
+     * @param peers Vizinhos de onde são descarregados os blocos
+     * ({@link BlockDownloader}); o {@code node} é sempre incluído.
+     * @param listener Eventos para a GUI (pode ser null).
+     * @param lock Objeto que protege a cadeia local (o mesmo da receção de
+     * blocos).
+     * @param onUpdate Carteiras e mempool depois de cada mudança da cadeia.
+     */
+    public ChainSync(RemoteNodeInterface node, Collection<RemoteNodeInterface> peers, Nodelistener listener,
+            Object lock, Consumer<ChainUpdate> onUpdate) {
+        this.node = node;
+        Set<RemoteNodeInterface> all = new LinkedHashSet<>();
+        all.add(node);
+        all.addAll(peers);
+        this.peers = all;
+        this.listener = listener;
+        this.lock = lock;
+        this.onUpdate = onUpdate;
+    }
+
+    /**
+     * Traz a cadeia local até ao topo do vizinho, se a cadeia dele tiver mais
+     * trabalho acumulado.
+     *
+     * @return Número de blocos adicionados.
+     * @throws Exception Se o vizinho enviar cabeçalhos ou blocos inválidos.
+     */
+    public int run() throws Exception {
+        ChainTip remote = node.getChainTip();
+        BlockChain local = loadLocal();
+        if (remote == null || (local != null && !isBetter(remote, local))) {
+            System.out.println("SYNC: A minha blockchain já está atualizada.");
+            return 0;
+        }
+        // 1. Último bloco em comum (-1: cadeia nova ou Genesis diferente)
+        int ancestor = local == null ? -1 : node.findCommonAncestor(local.getLocator());
+        if (local != null && ancestor < 0) {
+            // Substituir a cadeia inteira apagaria blocos que não podem ser
+            // repostos (nem desfeitos nas carteiras) se o download falhar
+            throw new Exception("Sync Error: the peer's chain has a different Genesis block.");
+        }
+
+        // 2. Cabeçalhos em falta (validados antes de descarregar os blocos)
+        List<BlockHeader> headers = downloadHeaders(local, ancestor, remote.getSize());
+        if (local != null) {
+            // Trabalho do ramo do vizinho desde o antepassado comum
+            BigInteger work = local.getChainWork(ancestor + 1);
+            for (BlockHeader h : headers) {
+                work = work.add(h.getWork());
+            }
+            if (work.compareTo(local.getChainWork()) <= 0) {
+                System.out.println("SYNC: A cadeia do vizinho não tem mais trabalho.");
+                return 0;
+            }
+        }
+        System.out.println("SYNC: " + headers.size() + " blocos em falta a partir do bloco " + (ancestor + 1));
+
+        // 3. Blocos em falta, de todos os vizinhos em paralelo
+        this.chain = local;
+        BlockDownloader downloader = new BlockDownloader(peers, headers, this::commit);
+        int added = downloader.run();
+        System.out.println("SYNC: " + added + " blocos adicionados.");
+        for (String line : downloader.getPeerReport()) {
+            System.out.println("SYNC: " + line);
+        }
+        if (listener != null && added > 0) {
+            listener.onTransaction("BlockReceived");
+        }
+        return added;
+    }
+
+    /**
+     * Valida e guarda um bloco descarregado (por ordem de ID). Os blocos de um
+     * ramo com menos trabalho que o fork local ficam num ramo lateral até o
+     * ultrapassarem ({@link BlockChain#processBlock(Block)}).
+     */
+    private void commit(Block b) throws Exception {
+        ChainUpdate update;
+        synchronized (lock) {
+            if (chain == null) {
+                chain = new BlockChain(b); // Genesis
+                update = ChainUpdate.of(ChainUpdate.Status.EXTENDED, b);
+            } else {
+                // valida PoW, Merkle Root, sequência e dificuldade; numa
+                // reorganização falhada a cadeia anterior é reposta
+                update = chain.processBlock(b);
+            }
+        }
+        if (update.getStatus() == ChainUpdate.Status.ORPHAN) {
+            throw new Exception("Sync Error: block " + b.getID() + " does not link to the local chain.");
+        }
+        if (update.getStatus() == ChainUpdate.Status.REORGANIZED) {
+            System.out.println("SYNC: " + update.getDisconnected().size() + " blocos de um fork local removidos.");
+        }
+        if (onUpdate != null && !update.getConnected().isEmpty()) {
+            onUpdate.accept(update);
+        }
+    }
+
+    /**
+     * @return true se a cadeia do vizinho tem mais trabalho (ou, se o vizinho
+     * não envia o trabalho, mais blocos).
+     */
+    private static boolean isBetter(ChainTip remote, BlockChain local) {
+        if (remote.getWork() == null) {
+            return remote.getSize() > local.getSize();
+        }
+        return remote.getWork().compareTo(local.getChainWork()) > 0;
+    }
+
+    /**
+     * Descarrega e valida os cabeçalhos depois do antepassado comum. Além do
+     * encadeamento e do Proof of Work, cada cabeçalho é validado sobre o seu
+     * ramo (dificuldade e timestamp, {@link BlockChain#validateHeader}).
+     *
+     * @param local Cadeia local (null para começar no Genesis).
+     * @param ancestor Último bloco em comum (-1 para começar no Genesis).
+     * @param remoteSize Altura anunciada pelo vizinho.
+     * @return Os cabeçalhos, por ordem de ID.
+     */
+    private List<BlockHeader> downloadHeaders(BlockChain local, int ancestor, int remoteSize) throws Exception {
+        List<BlockHeader> headers = new ArrayList<>();
+        // Cabeçalhos do ramo do vizinho: os locais até ao antepassado comum
+        IntFunction<BlockHeader> branch = id -> id <= ancestor ? local.getHeader(id) : headers.get(id - ancestor - 1);
+        BlockHeader previous = ancestor < 0 ? null : local.getHeader(ancestor);
+        int from = ancestor + 1;
+        while (from < remoteSize) {
+            List<BlockHeader> batch = node.getHeaders(from, Math.min(BlockChain.MAX_HEADERS, remoteSize - from));
+            if (batch == null || batch.isEmpty()) {
+                break;
+            }
+            for (BlockHeader h : batch) {
+                if (h.getID() != from) {
+                    throw new Exception("Sync Error: expected header " + from + " but got " + h.getID() + ".");
+                }
+                if (previous != null && !Arrays.equals(previous.getCurrentHash(), h.getPreviousHash())) {
+                    throw new Exception("Sync Error: header " + from + " does not link to the previous one.");
+                }
+                if (!h.isValid()) {
+                    throw new Exception("Sync Error: invalid Proof of Work in header " + from + ".");
+                }
+                if (previous != null) {
+                    BlockChain.validateHeader(h, previous, branch);
+                }
+                headers.add(h);
+                previous = h;
+                from++;
+            }
+        }
+        return headers;
+    }
+
+    private static BlockChain loadLocal() {
+        try {
+            return BlockChain.load(BlockChain.FILE_PATH + "blockchain.bch");
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (Exception e) {
+            System.out.println("SYNC: Erro ao carregar a blockchain local: " + e.getMessage());
+            return null;
+        }
+    }
+}
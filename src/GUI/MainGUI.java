@@ -502,8 +502,8 @@ public class MainGUI extends javax.swing.JFrame implements Nodelistener, MinerLi
         jPanel9.setBackground(new java.awt.Color(0, 204, 204));
 
         spZeros.setFont(new java.awt.Font("Segoe UI", 1, 18)); // NOI18N
-        spZeros.setModel(new javax.swing.SpinnerNumberModel(3, 2, null, 1));
-        spZeros.setBorder(javax.swing.BorderFactory.createTitledBorder("Dificulty"));
+        spZeros.setModel(new javax.swing.SpinnerNumberModel(18, 1, 256, 1));
+        spZeros.setBorder(javax.swing.BorderFactory.createTitledBorder("Dificulty (bits)"));
 
         btStartMinig.setBackground(new java.awt.Color(204, 255, 255));
         btStartMinig.setFont(new java.awt.Font("Helvetica Neue", 1, 18)); // NOI18N
@@ -1001,8 +1001,10 @@ public class MainGUI extends javax.swing.JFrame implements Nodelistener, MinerLi
             core.BlockChain bc = core.BlockChain.load(core.BlockChain.FILE_PATH + "blockchain.bch");
             
             // Determinar próximo ID e Hash Anterior
-            int nextID = (bc != null && bc.getLastBlock() != null) ? bc.getLastBlock().getID() + 1 : 0;
-            byte[] prevHash = (bc != null && bc.getLastBlock() != null) ? bc.getLastBlock().getCurrentHash() : new byte[32];
+            // (apenas o cabeçalho do topo é lido - o corpo do bloco fica no disco)
+            core.BlockHeader topo = (bc != null) ? bc.getLastHeader() : null;
+            int nextID = (topo != null) ? topo.getID() + 1 : 0;
+            byte[] prevHash = (topo != null) ? topo.getCurrentHash() : new byte[32];
 
             // 2. Filtrar Transações Pendentes (que ainda não estão na chain)
             List<String> pendentes = myremoteObject.getTransactions();
@@ -1027,21 +1029,32 @@ public class MainGUI extends javax.swing.JFrame implements Nodelistener, MinerLi
             }
 
             // 3. Criar Bloco Candidato
-            int dif = (int) spZeros.getValue();
+            // (a dificuldade é definida pela rede; o spinner só serve para o genesis)
+            int dif = (topo != null) ? bc.getNextDificulty() : (int) spZeros.getValue();
+            spZeros.setValue(dif);
             this.blocoCandidato = new core.Block(nextID, prevHash, dif, txsReais);
 
             // 4. Iniciar Mineração (Multi-threaded)
             byte[] headerBytes = this.blocoCandidato.getHeaderData();
             String headerParaMinar = java.util.Base64.getEncoder().encodeToString(headerBytes);
+            int pow = this.blocoCandidato.getPowVersion();
             
             new Thread(() -> {
                 try {
-                    // Manda minerar localmente (bloqueante)
-                    myremoteObject.mine(headerParaMinar, dif);
-                    
-                    // Manda a rede minerar (competição)
-                    for (RemoteNodeInterface node : myremoteObject.getNetwork()) {
-                        try { node.mine(headerParaMinar, dif); } catch (Exception e) {}
+                    // Este nó e a rede mineram intervalos disjuntos de nonces
+                    List<RemoteNodeInterface> nodes = new ArrayList<>();
+                    nodes.add(myremoteObject);
+                    nodes.addAll(myremoteObject.getNetwork());
+                    MiningCoordinator coordinator = new MiningCoordinator(headerParaMinar, dif, pow, nodes);
+                    long found = coordinator.run();
+
+                    if (found >= 0) {
+                        onWorkFound(found);
+                    } else if (found == MinerDistibuted.RANGE_EXHAUSTED) {
+                        SwingUtilities.invokeLater(() -> {
+                            btStartMinig.setEnabled(true);
+                            txtMinerMessage.setText("Espaço de nonces esgotado sem solução.");
+                        });
                     }
                 } catch (Exception ex) {
                     ex.printStackTrace();
@@ -1398,12 +1411,31 @@ public class MainGUI extends javax.swing.JFrame implements Nodelistener, MinerLi
         });
     }
 
+    /**
+     * Estatísticas periódicas do mineiro local: mostra o débito no ícone.
+     */
+    @Override
+    public void onMiningStats(MiningStats stats) {
+        SwingUtilities.invokeLater(() -> imgMiner.setToolTipText(
+                String.format("%.0f H/s (%d threads)", stats.getHashRate(), stats.getThreadRates().length)));
+    }
+
     /**
      * Invocado quando este nó encontra o nonce vencedor!
      * Cria o bloco final, propaga e reclama a vitória.
      */
     @Override
     public void onNonceFound(int nonce) {
+        onWorkFound(Integer.toUnsignedLong(nonce));
+    }
+
+    /**
+     * Invocado com o índice de trabalho vencedor (extraNonce:nonce).
+     * Cria o bloco final, propaga e reclama a vitória.
+     */
+    @Override
+    public void onWorkFound(long work) {
+        int nonce = core.ProofOfWork.nonce(work);
         SwingUtilities.invokeLater(() -> {
             try {
                 imgWinner.setVisible(true); // Mostra Troféu
@@ -1420,8 +1452,8 @@ public class MainGUI extends javax.swing.JFrame implements Nodelistener, MinerLi
                     // Carrega a blockchain para verificar se mudou entretanto (Race Condition)
                     core.BlockChain bc = core.BlockChain.load(core.BlockChain.FILE_PATH + "blockchain.bch");
                     
-                    if (bc != null && bc.getLastBlock() != null) {
-                        byte[] hashAtual = bc.getLastBlock().getCurrentHash();
+                    if (bc != null && bc.getSize() > 0) {
+                        byte[] hashAtual = bc.getLastHeader().getCurrentHash();
                         if (!java.util.Arrays.equals(this.blocoCandidato.getPreviousHash(), hashAtual)) {
                             JOptionPane.showMessageDialog(this, "A blockchain mudou enquanto minerava. Bloco descartado.");
                             this.blocoCandidato = null;
@@ -1430,7 +1462,7 @@ public class MainGUI extends javax.swing.JFrame implements Nodelistener, MinerLi
                     }
 
                     // Se for válido, sela o bloco com o nonce e propaga
-                    this.blocoCandidato.setNonce(nonce);
+                    this.blocoCandidato.setWork(work);
                     byte[] blockBytes = utils.Serializer.objectToByteArray(this.blocoCandidato);
                     
                     myremoteObject.propagateBlock(blockBytes);
@@ -0,0 +1,331 @@
+package GUI;
+
+import SaudeCerteira.SaudeTransaction;
+import SaudeCerteira.User;
+import core.Block;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+import utils.Serializer;
+
+/**
+ * Mempool: transações pendentes à espera de serem mineradas.
+ * <p>
+ * Substitui o conjunto de Strings Base64 (cada inserção copiava o conjunto e
+ * cada pesquisa comparava os dados serializados):
+ * <ul>
+ * <li><b>Chave:</b> o hash da transação ({@link SaudeTransaction#getHash()}).
+ * Inserir, procurar e remover são O(1); as transações de um bloco minerado
+ * são removidas pelo hash, sem voltar a serializá-las.</li>
+ * <li><b>Prioridade:</b> as transações estão em filas por prioridade (ex: o
+ * papel do remetente, {@link #roleOfSender()}), cada uma por ordem de
+ * chegada. {@link #getData()} devolve as de maior prioridade primeiro.</li>
+ * <li><b>Limites:</b> no máximo {@link #MAX_TRANSACTIONS} transações e
+ * {@link #MAX_BYTES} caracteres. Com a mempool cheia sai a transação mais antiga
+ * da prioridade mais baixa; uma transação nova só entra se tiver prioridade
+ * maior que essa.</li>
+ * <li><b>Validade:</b> transações com mais de {@link #EXPIRY_MS} saem.</li>
+ * </ul>
+ * Na rede as transações continuam a circular em Base64; os vizinhos anunciam
+ * só os hashes e pedem as que não têm ({@link TransactionGossip}).
+ * Created on 19/10/2026, 00:24:51
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public class Mempool {
+
+    /**
+     * Número máximo de transações pendentes.
+     */
+    public static final int MAX_TRANSACTIONS = 50_000;
+
+    /**
+     * Tamanho máximo das transações pendentes (caracteres Base64).
+     */
+    public static final long MAX_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Tempo máximo de uma transação na mempool.
+     */
+    public static final long EXPIRY_MS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Uma transação pendente.
+     */
+    private static final class Entry {
+
+        final String id;
+        final String data;
+        final int priority;
+        final long received;
+
+        Entry(String id, String data, int priority, long received) {
+            this.id = id;
+            this.data = data;
+            this.priority = priority;
+            this.received = received;
+        }
+    }
+
+    private final ToIntFunction<SaudeTransaction> priority;
+    // transações por hash
+    private final Map<String, Entry> byId = new HashMap<>();
+    // filas por prioridade (crescente), cada uma por ordem de chegada
+    private final TreeMap<Integer, LinkedHashMap<String, Entry>> queues = new TreeMap<>();
+    private long bytes;
+
+    /**
+     * Mempool sem prioridades (só ordem de chegada).
+     */
+    public Mempool() {
+        this(t -> 0);
+    }
+
+    /**
+     * @param priority Prioridade de uma transação (maior sai primeiro).
+     */
+    public Mempool(ToIntFunction<SaudeTransaction> priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Prioridade pelo papel do remetente: receitas de médicos primeiro,
+     * depois farmacêuticos, depois os restantes. O papel de cada utilizador
+     * é lido do disco uma vez.
+     *
+     * @return Função de prioridade.
+     */
+    public static ToIntFunction<SaudeTransaction> roleOfSender() {
+        Map<String, Integer> roles = new ConcurrentHashMap<>();
+        return t -> roles.computeIfAbsent(String.valueOf(t.getTxtSender()), name -> {
+            try {
+                User u = User.login(name);
+                return u.isMedico() ? 2 : u.isFarmaceutico() ? 1 : 0;
+            } catch (Exception e) {
+                return 0;
+            }
+        });
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: INSERÇÃO E REMOÇÃO
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    /**
+     * Adiciona uma transação recebida da rede.
+     *
+     * @param dataBase64 Transação serializada em Base64.
+     * @return O hash da transação (Base64), ou null se já existe, é inválida
+     * (dados ou assinatura) ou a mempool está cheia.
+     */
+    public String add(String dataBase64) {
+        SaudeTransaction t;
+        try {
+            t = (SaudeTransaction) Serializer.byteArrayToObject(Base64.getDecoder().decode(dataBase64));
+        } catch (Exception e) {
+            return null;
+        }
+        return add(t, dataBase64);
+    }
+
+    /**
+     * Adiciona uma transação (ex: de um bloco que saiu da cadeia).
+     *
+     * @param t A transação.
+     * @return O hash da transação (Base64), ou null se já existe, é inválida
+     * ou a mempool está cheia.
+     */
+    public String add(SaudeTransaction t) {
+        try {
+            return add(t, Base64.getEncoder().encodeToString(Serializer.objectToByteArray(t)));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private String add(SaudeTransaction t, String data) {
+        String id = key(t.getHash());
+        synchronized (this) {
+            if (byId.containsKey(id)) {
+                return null;
+            }
+        }
+        // fora do lock: assinatura e prioridade podem ser lentas
+        if (!t.isSignatureValid()) {
+            return null;
+        }
+        Entry e = new Entry(id, data, priority.applyAsInt(t), System.currentTimeMillis());
+        synchronized (this) {
+            if (byId.containsKey(id)) {
+                return null;
+            }
+            expire(e.received);
+            while (byId.size() >= MAX_TRANSACTIONS || bytes + e.data.length() > MAX_BYTES) {
+                Map.Entry<Integer, LinkedHashMap<String, Entry>> lowest = queues.firstEntry();
+                if (lowest == null || lowest.getKey() >= e.priority) {
+                    return null; // cheia de transações com a mesma prioridade ou maior
+                }
+                remove(lowest.getValue().values().iterator().next());
+            }
+            byId.put(id, e);
+            queues.computeIfAbsent(e.priority, k -> new LinkedHashMap<>()).put(id, e);
+            bytes += e.data.length();
+            return id;
+        }
+    }
+
+    /**
+     * Remove as transações incluídas num bloco (O(1) por transação).
+     *
+     * @param block Bloco que entrou na cadeia.
+     * @return Número de transações removidas.
+     */
+    public int removeMined(Block block) {
+        List<String> ids = new ArrayList<>();
+        for (Object o : block.getData().getElements()) {
+            if (o instanceof SaudeTransaction) {
+                ids.add(key(((SaudeTransaction) o).getHash()));
+            }
+        }
+        int count = 0;
+        synchronized (this) {
+            for (String id : ids) {
+                Entry e = byId.get(id);
+                if (e != null) {
+                    remove(e);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Remove as transações recebidas há mais de {@link #EXPIRY_MS}.
+     *
+     * @param now Instante atual (ms).
+     * @return Número de transações removidas.
+     */
+    public synchronized int expire(long now) {
+        int count = 0;
+        Iterator<LinkedHashMap<String, Entry>> queueIt = queues.values().iterator();
+        while (queueIt.hasNext()) {
+            LinkedHashMap<String, Entry> queue = queueIt.next();
+            // cada fila está por ordem de chegada: para no primeiro válido
+            Iterator<Entry> it = queue.values().iterator();
+            while (it.hasNext()) {
+                Entry e = it.next();
+                if (now - e.received <= EXPIRY_MS) {
+                    break;
+                }
+                it.remove();
+                byId.remove(e.id);
+                bytes -= e.data.length();
+                count++;
+            }
+            if (queue.isEmpty()) {
+                queueIt.remove();
+            }
+        }
+        return count;
+    }
+
+    private void remove(Entry e) {
+        byId.remove(e.id);
+        LinkedHashMap<String, Entry> queue = queues.get(e.priority);
+        queue.remove(e.id);
+        if (queue.isEmpty()) {
+            queues.remove(e.priority);
+        }
+        bytes -= e.data.length();
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: CONSULTA
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    /**
+     * @param t Uma transação.
+     * @return true se a transação está pendente.
+     */
+    public synchronized boolean contains(SaudeTransaction t) {
+        return byId.containsKey(key(t.getHash()));
+    }
+
+    /**
+     * @param id Hash de uma transação (Base64).
+     * @return true se a transação está pendente.
+     */
+    public synchronized boolean contains(String id) {
+        return byId.containsKey(id);
+    }
+
+    /**
+     * @return Os hashes (Base64) das transações, pela ordem de
+     * {@link #getData()}.
+     */
+    public synchronized List<String> getIds() {
+        List<String> list = new ArrayList<>(byId.size());
+        for (LinkedHashMap<String, Entry> queue : queues.descendingMap().values()) {
+            list.addAll(queue.keySet());
+        }
+        return list;
+    }
+
+    /**
+     * @param ids Hashes (Base64) de transações.
+     * @return As transações pedidas que estão pendentes, em Base64.
+     */
+    public synchronized List<String> getData(List<String> ids) {
+        List<String> list = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Entry e = byId.get(id);
+            if (e != null) {
+                list.add(e.data);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @return As transações em Base64, da maior prioridade para a menor e,
+     * em cada prioridade, por ordem de chegada.
+     */
+    public synchronized List<String> getData() {
+        List<String> list = new ArrayList<>(byId.size());
+        for (LinkedHashMap<String, Entry> queue : queues.descendingMap().values()) {
+            for (Entry e : queue.values()) {
+                list.add(e.data);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @return Número de transações pendentes.
+     */
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    /**
+     * @return Tamanho (caracteres Base64) das transações pendentes.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    private static String key(byte[] hash) {
+        return Base64.getEncoder().encodeToString(hash);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Mempool[" + byId.size() + " transactions, " + bytes + " bytes]";
+    }
+}
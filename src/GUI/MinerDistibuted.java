@@ -1,9 +1,14 @@
 package GUI;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import core.ProofOfWork;
 import java.util.Base64;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -12,7 +17,8 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <p>
  * Esta classe implementa o algoritmo de Proof of Work (PoW) utilizando paralelismo.
  * Divide a tarefa de procurar o "Nonce" por todos os núcleos (cores) do processador
- * disponíveis na máquina para maximizar a performance.
+ * disponíveis na máquina para maximizar a performance, através de um pool de
+ * threads persistente ({@link MiningPool}).
  * <p>
  * Utiliza variáveis atómicas para garantir a segurança entre threads sem bloquear o processamento.
  * Created on 27/11/2024, 14:14:13
@@ -25,7 +31,7 @@ public class MinerDistibuted {
      * Simula o início da mineração e uma paragem forçada após 1 segundo.
      */
     public static void main(String[] args) {
-        String msg = "Transaction 7";
+        String msg = Base64.getEncoder().encodeToString("Transaction 7".getBytes());
         MinerDistibuted miner = new MinerDistibuted();
 
         // Thread paralela para simular uma interrupção externa (ex: outro nó ganhou)
@@ -42,22 +48,27 @@ public class MinerDistibuted {
         }).start();
         
         // Inicia a mineração
-        int n = miner.mine(msg, 4);
-        
+        long work = miner.mine(msg, 4);
+        if (work < 0) {
+            System.out.println("Mining stopped without a solution");
+            return;
+        }
+
         System.out.println("Message = " + msg);
         System.out.println("Nonce = " + miner.nonce);
-        System.out.println("Hash = " + getHash(msg + n));
+        System.out.println("Hash = " + getHash(msg + ProofOfWork.nonce(work)));
     }
 
     // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
     // :: VARIÁVEIS PARTILHADAS (THREAD-SAFE)
     // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
     
-    /** * O Nonce encontrado.
-     * Iniciado a 0. Se for diferente de 0, significa que uma thread encontrou a solução
-     * ou que foi interrompido externamente.
+    /** * O último Nonce encontrado (ou o nonce indicado em {@link #stopMining}).
      */
     AtomicInteger nonce = new AtomicInteger(0); 
+
+    /** Último índice de trabalho (extraNonce:nonce) encontrado por este nó. */
+    volatile long work = RANGE_EXHAUSTED;
     
     /** Flag que indica se o mineiro está ativo. */
     AtomicBoolean isWorking = new AtomicBoolean();
@@ -73,12 +84,39 @@ public class MinerDistibuted {
     /** Dados do cabeçalho do bloco a minerar. */
     String message;
 
+    /** Versão do Proof of Work em curso ({@link ProofOfWork}). */
+    int version = ProofOfWork.VERSION_TEXT;
+
     /**
      * Regista um listener para receber atualizações do progresso.
      * @param listener A classe que implementa a interface MinerListener (ex: MainGUI).
      */
     public void addListener(MinerListener listener) {
         this.listener = listener;
+        startStatsTimer();
+    }
+
+    /** Período de envio das estatísticas ao listener (ms). */
+    public static final long STATS_PERIOD = 1000;
+
+    /** Thread que envia as estatísticas ao listener enquanto há mineração. */
+    private static ScheduledExecutorService statsTimer;
+
+    private static synchronized void startStatsTimer() {
+        if (statsTimer != null) {
+            return;
+        }
+        statsTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "miner-stats");
+            t.setDaemon(true);
+            return t;
+        });
+        statsTimer.scheduleAtFixedRate(() -> {
+            MiningPool pool = MiningPool.getInstance();
+            if (listener != null && pool.isBusy()) {
+                listener.onMiningStats(pool.getStats(null));
+            }
+        }, STATS_PERIOD, STATS_PERIOD, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -88,7 +126,11 @@ public class MinerDistibuted {
      */
     public void stopMining(int number) {
         isWorking.set(false);
-        nonce.set(number); // Define o nonce para parar os loops das threads
+        nonce.set(number);
+        // As threads do pool largam os trabalhos no fim do lote atual
+        for (MiningJob job : jobs) {
+            pool.cancel(job.getId());
+        }
         
         if(listener != null){
             listener.onStopMining(number);
@@ -114,106 +156,157 @@ public class MinerDistibuted {
         return isChampion.get();
     }
 
+    /**
+     * @param node Nome do nó (para a vista da rede), ou null.
+     * @return Débito e estatísticas de mineração deste processo.
+     */
+    public MiningStats getStats(String node) {
+        return pool.getStats(node);
+    }
+
     // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
     // :: CORE DE MINERAÇÃO
     // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
 
     /**
-     * Inicia o processo de mineração bloqueante.
-     * Cria tantas threads quanto o número de núcleos do CPU.
+     * Inicia o processo de mineração bloqueante no modo texto original
+     * ({@link ProofOfWork#VERSION_TEXT}).
      * @param msg Cabeçalho do bloco (Base64).
      * @param dificulty Número de zeros exigidos.
-     * @return O nonce que resolve o puzzle.
+     * @return O índice de trabalho vencedor (o nonce é
+     * {@link ProofOfWork#nonce(long)}), ou {@link #RANGE_EXHAUSTED} /
+     * {@link #RANGE_STOPPED} se não houver solução.
      */
-    public int mine(String msg, int dificulty) {
-        this.message = msg;
+    public long mine(String msg, int dificulty) {
+        return mine(msg, dificulty, ProofOfWork.VERSION_TEXT);
+    }
+
+    /**
+     * Inicia o processo de mineração bloqueante.
+     * O trabalho é submetido ao {@link MiningPool} do processo (threads já
+     * criadas, uma por núcleo) e a thread que chama espera pelo resultado.
+     * <p>
+     * As threads partilham um índice de trabalho de 64 bits
+     * ({@link ProofOfWork#work(int, int)}): na versão
+     * {@link ProofOfWork#VERSION_EXTRA_NONCE}, quando os 2^32 nonces se esgotam o
+     * índice passa naturalmente para o extraNonce seguinte. Nas versões
+     * anteriores, a mineração termina sem solução depois de testar os 2^32 nonces.
+     * O nonce 0 é uma solução válida.
+     * @param msg Cabeçalho do bloco (Base64).
+     * @param dificulty Dificuldade (caracteres '0' nas versões texto/binária,
+     * bits a zero nas seguintes).
+     * @param version Versão do Proof of Work.
+     * @return O índice de trabalho vencedor, ou {@link #RANGE_EXHAUSTED} /
+     * {@link #RANGE_STOPPED} se não houver solução.
+     */
+    public long mine(String msg, int dificulty, int version) {
+        // Random garante que não começamos sempre do 0 em todas as máquinas.
+        long start = new Random().nextInt() & 0xFFFFFFFFL;
+        long count = version >= ProofOfWork.VERSION_EXTRA_NONCE
+                ? Long.MAX_VALUE - start
+                : ProofOfWork.NONCE_SPACE;
+        if (listener == null) {
+            System.out.println("Start Mining " + dificulty + "\t" + msg);
+        }
+        MiningJob job = submit(msg, dificulty, version, start, count);
+        long w;
         try {
-            // Notificar início
+            w = job.future().get();
+        } catch (InterruptedException | ExecutionException ex) {
+            job.cancel();
+            return RANGE_STOPPED;
+        }
+        if (w >= 0) {
             if (listener != null) {
-                listener.onStartMining(msg, dificulty);
+                listener.onWorkFound(w);
             } else {
-                System.out.println("Start Mining " + dificulty + "\t" + msg);
+                System.out.println("Found work " + w + " (" + job.getStatus() + ")");
             }
-            
-            // Inicializar controlo de threads
-            isWorking.set(true);
+        }
+        return w;
+    }
+
+    /** Resultado de um trabalho: o intervalo foi testado sem solução. */
+    public static final long RANGE_EXHAUSTED = -1;
+
+    /** Resultado de um trabalho: a mineração foi parada antes do fim do intervalo. */
+    public static final long RANGE_STOPPED = -2;
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: TRABALHOS ASSÍNCRONOS (SUBMIT / POLL / CANCEL)
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+    /** Pool de threads de mineração (partilhado no processo). */
+    final MiningPool pool = MiningPool.getInstance();
+
+    /** Trabalhos deste mineiro ainda por terminar (cancelados em {@link #stopMining}). */
+    final Set<MiningJob> jobs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Submete um trabalho de mineração sem bloquear.
+     * <p>
+     * O intervalo {@code [start, start + count[} de índices de trabalho
+     * ({@link ProofOfWork#work(int, int)}) é repartido em lotes pelas threads do
+     * pool, por isso nenhum par (extraNonce, nonce) é testado duas vezes. Quem
+     * submete decide o que fazer com o resultado: o listener não recebe
+     * {@code onWorkFound} (ver {@link MiningCoordinator}).
+     * @param msg Cabeçalho do bloco (Base64).
+     * @param dificulty Dificuldade exigida.
+     * @param version Versão do Proof of Work.
+     * @param start Primeiro índice do intervalo.
+     * @param count Número de índices do intervalo.
+     * @return O trabalho (o resultado chega em {@link MiningJob#future()}).
+     */
+    public MiningJob submit(String msg, int dificulty, int version, long start, long count) {
+        this.message = msg;
+        this.version = version;
+        if (isWorking.compareAndSet(false, true)) {
             isChampion.set(false);
-            nonce = new AtomicInteger(0); 
-            
-            // Ticket: Um contador atómico partilhado.
-            // Cada thread pede um número único daqui para testar.
-            // Random garante que não começamos sempre do 0 em todas as máquinas.
-            Random rnd = new Random();
-            AtomicInteger ticket = new AtomicInteger(Math.abs(rnd.nextInt())); 
-            
-            // Criar Pool de Threads (Worker Threads)
-            int numCores = Runtime.getRuntime().availableProcessors();
-            MinerThr thr[] = new MinerThr[numCores];
-            
-            for (int i = 0; i < thr.length; i++) {
-                thr[i] = new MinerThr(nonce, ticket, dificulty, msg);
-                thr[i].start();
+            if (listener != null) {
+                listener.onStartMining(msg, dificulty);
             }
-            
-            // Esperar que a primeira thread termine (quando nonce != 0)
-            thr[0].join();
-            
-            return nonce.get();
-            
-        } catch (InterruptedException ex) {
-            return 0;
         }
+        MiningJob job = pool.submit(Base64.getDecoder().decode(msg), dificulty, version, start, count);
+        jobs.add(job);
+        job.future().thenAccept(w -> {
+            jobs.remove(job);
+            if (w >= 0) {
+                isChampion.set(true); // SOU O VENCEDOR!
+                work = w;
+                nonce.set(ProofOfWork.nonce(w));
+            }
+        });
+        return job;
     }
 
     /**
-     * Thread de Trabalho (Worker).
-     * Cada instância desta classe corre num núcleo do CPU.
+     * Consulta o estado de um trabalho.
+     * @param jobId ID devolvido por {@link #submit}.
+     * @return O estado, ou null se o trabalho não existe.
      */
-    private static class MinerThr extends Thread {
-
-        AtomicInteger trueNonce;    // Referência partilhada para o resultado final
-        AtomicInteger numberTicket; // Contador global de números a testar
-        int dificulty;              // Dificuldade (Zeros)
-        String message;             // Dados do bloco
-
-        public MinerThr(AtomicInteger nonce, AtomicInteger ticket, int dificulty, String msg) {
-            this.trueNonce = nonce;
-            this.numberTicket = ticket;
-            this.dificulty = dificulty;
-            this.message = msg;
-        }
+    public MiningStatus poll(long jobId) {
+        MiningJob job = pool.getJob(jobId);
+        return job == null ? null : job.getStatus();
+    }
 
-        @Override
-        public void run() {
-            // Criar string de zeros alvo (Ex: "0000")
-            String zeros = String.format("%0" + dificulty + "d", 0);
-            
-            // Loop enquanto ninguém encontrou o nonce (trueNonce == 0)
-            while (trueNonce.get() == 0) {
-                
-                // 1. Obter próximo número único para testar
-                int n = numberTicket.getAndIncrement();
-                
-                // 2. Calcular Hash
-                String hash = getHash(message + n);
-                
-                // 3. Verificar se resolve o puzzle
-                if (hash.startsWith(zeros)) {
-                    isChampion.set(true); // SOU O VENCEDOR!
-                    
-                    // Definir o resultado (isto fará as outras threads pararem)
-                    trueNonce.set(n);
-                    
-                    if (listener != null) {
-                        listener.onNonceFound(n);
-                    } else {
-                        System.out.println(Thread.currentThread().getName() + " found nonce " + n);
-                        System.out.println("Hash " + hash);
-                    }
-                }
-            }
-            System.out.println(Thread.currentThread().getName() + " stop ");
-        }
+    /**
+     * Cancela um trabalho (as threads passam ao seguinte no fim do lote atual).
+     * @param jobId ID devolvido por {@link #submit}.
+     * @return true se o trabalho foi cancelado.
+     */
+    public boolean cancel(long jobId) {
+        return pool.cancel(jobId);
+    }
+
+    /**
+     * Hash (Base64) do cabeçalho em mineração com o nonce atual, na versão de
+     * Proof of Work usada.
+     * @return Hash em Base64.
+     */
+    public String getHash() {
+        byte[] header = Base64.getDecoder().decode(message);
+        return Base64.getEncoder().encodeToString(ProofOfWork.hash(version, header,
+                ProofOfWork.extraNonce(work), ProofOfWork.nonce(work)));
     }
 
     /**
@@ -224,10 +317,9 @@ public class MinerDistibuted {
     public static String getHash(String msg) {
         try {
             // Algoritmo standard da Blockchain
-            java.security.MessageDigest md = java.security.MessageDigest.getInstance("SHA-256");
-            md.update(msg.getBytes());
-            return java.util.Base64.getEncoder().encodeToString(md.digest());
-        } catch (java.security.NoSuchAlgorithmException ex) {
+            java.security.MessageDigest md = utils.CryptoEngines.digest("SHA-256");
+            return java.util.Base64.getEncoder().encodeToString(md.digest(msg.getBytes()));
+        } catch (java.security.GeneralSecurityException ex) {
             return "ERROR";
         }
     }
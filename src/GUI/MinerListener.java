@@ -12,6 +12,7 @@ package GUI;
  * <li>A mineração começar.</li>
  * <li>A mineração for interrompida (por outro nó).</li>
  * <li>Uma solução (Nonce) for encontrada por este nó.</li>
+ * <li>Periodicamente durante a mineração, com o débito (H/s).</li>
  * </ul>
  * Created on 10/12/2025, 14:26:19
  * @author manso - computer
@@ -40,4 +41,23 @@ public interface MinerListener {
      */
     public void onNonceFound(int nonce);
 
+    /**
+     * Invocado quando ESTE nó encontra a solução, com o índice de trabalho
+     * completo (extraNonce nos 32 bits altos, nonce nos baixos).
+     * Por omissão só comunica o nonce.
+     * @param work O índice de trabalho vencedor.
+     */
+    public default void onWorkFound(long work) {
+        onNonceFound((int) work);
+    }
+
+    /**
+     * Invocado periodicamente ({@link MinerDistibuted#STATS_PERIOD}) enquanto
+     * há trabalhos de mineração, com as estatísticas do nó.
+     * Por omissão não faz nada.
+     * @param stats Débito por thread e total, trabalhos e tempos de solução.
+     */
+    public default void onMiningStats(MiningStats stats) {
+    }
+
 }
\ No newline at end of file
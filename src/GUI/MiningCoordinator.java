@@ -0,0 +1,323 @@
+package GUI;
+
+import core.ProofOfWork;
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coordenador da mineração distribuída por intervalos de nonces.
+ * <p>
+ * Em vez de cada nó começar num número aleatório (e poder repetir o trabalho
+ * dos outros), o espaço de trabalho é dividido em blocos de {@link #CHUNK}
+ * índices, distribuídos a pedido. O espaço tem 2^32 nonces, ou, com
+ * extraNonce ({@link ProofOfWork#VERSION_EXTRA_NONCE}), um novo bloco de 2^32
+ * nonces por cada valor do extraNonce:
+ * <ul>
+ * <li><b>Disjunto:</b> cada intervalo é entregue a um único nó, que o divide
+ * pelos seus núcleos ({@link RemoteNodeInterface#submitJob}).</li>
+ * <li><b>Balanceado:</b> um despachante por nó submete um intervalo novo assim
+ * que o anterior termina - os nós mais rápidos fazem mais trabalho.</li>
+ * <li><b>Tolerante a falhas:</b> se um nó sair da rede (erro RMI) ou perder um
+ * trabalho (ex: reiniciou), o intervalo volta para a fila e é atribuído a
+ * outro nó. Os despachantes só terminam quando não há intervalos na fila nem
+ * em curso noutros nós.</li>
+ * <li><b>Relatório:</b> no fim indica quanto do espaço foi percorrido e por
+ * quem ({@link #getReport()}).</li>
+ * </ul>
+ * Created on 18/10/2026, 16:52:08
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public class MiningCoordinator {
+
+    /**
+     * Número de nonces por intervalo atribuído (alguns segundos de trabalho).
+     */
+    public static final long CHUNK = 1L << 24;
+
+    /**
+     * Número de intervalos submetidos a cada nó antes de saber o resultado do
+     * primeiro.
+     */
+    public static final int PIPELINE = 2;
+
+    /**
+     * Intervalo entre consultas do estado de um trabalho (ms).
+     */
+    public static final long POLL_INTERVAL = 20;
+
+    /**
+     * Número de trabalhos seguidos que um nó pode perder (pollJob devolve
+     * null) antes de deixar de receber intervalos.
+     */
+    public static final int MAX_LOST = 3;
+
+    private final String message;
+    private final int dificulty;
+    private final int version;
+    private final List<RemoteNodeInterface> nodes;
+    private final long space;
+
+    // intervalos devolvidos por nós que falharam (têm prioridade)
+    private final Deque<long[]> returned = new ArrayDeque<>();
+    // início do próximo intervalo ainda não atribuído
+    private long next = 0;
+    // intervalos atribuídos e ainda não terminados nem devolvidos
+    private int outstanding = 0;
+    private volatile boolean finished;
+
+    private final AtomicLong result = new AtomicLong(MinerDistibuted.RANGE_EXHAUSTED);
+    private final AtomicLong covered = new AtomicLong();
+    private final Map<String, Long> coveredByNode = new LinkedHashMap<>();
+    private final List<String> dropped = new ArrayList<>();
+
+    /**
+     * @param message Cabeçalho do bloco (Base64).
+     * @param dificulty Dificuldade exigida.
+     * @param version Versão do Proof of Work.
+     * @param nodes Nós que participam (incluindo o local).
+     */
+    public MiningCoordinator(String message, int dificulty, int version, List<RemoteNodeInterface> nodes) {
+        this.message = message;
+        this.dificulty = dificulty;
+        this.version = version;
+        this.nodes = new ArrayList<>(nodes);
+        this.space = ProofOfWork.workSpace(version);
+    }
+
+    /**
+     * Executa a mineração em todos os nós (bloqueante).
+     *
+     * @return O índice de trabalho encontrado (extraNonce:nonce) ou
+     * {@link MinerDistibuted#RANGE_EXHAUSTED} se o espaço foi percorrido sem
+     * solução, ou {@link MinerDistibuted#RANGE_STOPPED} se foi interrompida.
+     * @throws InterruptedException Se a thread for interrompida.
+     */
+    public long run() throws InterruptedException {
+        List<Thread> dispatchers = new ArrayList<>();
+        for (RemoteNodeInterface node : nodes) {
+            Thread t = new Thread(() -> dispatch(node), "coordinator-" + dispatchers.size());
+            dispatchers.add(t);
+            t.start();
+        }
+        for (Thread t : dispatchers) {
+            t.join();
+        }
+        if (!isDrained()) {
+            // todos os nós falharam com intervalos por percorrer: não esgotou
+            result.compareAndSet(MinerDistibuted.RANGE_EXHAUSTED, MinerDistibuted.RANGE_STOPPED);
+        }
+        // parar os restantes nós (já há vencedor, ou não há mais trabalho)
+        int stopNonce = result.get() >= 0 ? ProofOfWork.nonce(result.get()) : -1;
+        for (RemoteNodeInterface node : nodes) {
+            try {
+                node.stopMining(stopNonce);
+            } catch (RemoteException ex) {
+            }
+        }
+        System.out.println(getReport());
+        System.out.println(MiningStats.networkReport(nodes));
+        return result.get();
+    }
+
+    /**
+     * Interrompe a distribuição de intervalos (ex: chegou um bloco da rede).
+     */
+    public void stop() {
+        finished = true;
+        if (result.get() < 0) {
+            result.compareAndSet(MinerDistibuted.RANGE_EXHAUSTED, MinerDistibuted.RANGE_STOPPED);
+        }
+    }
+
+    /**
+     * Ciclo de um despachante: mantém até {@link #PIPELINE} intervalos na fila
+     * do nó (submit) e consulta o mais antigo (poll) até haver solução, o espaço
+     * acabar ou o nó falhar. Com um intervalo sempre em espera no nó, as suas
+     * threads passam ao seguinte sem esperar pela rede.
+     */
+    private void dispatch(RemoteNodeInterface node) {
+        String name = nodeName(node);
+        // trabalhos submetidos ao nó: {jobId, início, tamanho}
+        Deque<long[]> pending = new ArrayDeque<>();
+        int lost = 0;
+        try {
+            while (true) {
+                long[] range;
+                while (pending.size() < PIPELINE && (range = take()) != null) {
+                    long id;
+                    try {
+                        id = node.submitJob(message, dificulty, version, range[0], range[1]);
+                    } catch (RemoteException ex) {
+                        giveBack(range);
+                        throw ex;
+                    }
+                    pending.add(new long[]{id, range[0], range[1]});
+                }
+                if (pending.isEmpty()) {
+                    if (isDrained()) {
+                        return;
+                    }
+                    // intervalos ainda em curso noutros nós podem voltar à fila
+                    Thread.sleep(POLL_INTERVAL);
+                    continue;
+                }
+                long[] job = pending.peek();
+                MiningStatus status = node.pollJob(job[0]);
+                if (status == null) {
+                    // o nó já não conhece o trabalho (histórico cheio ou
+                    // reiniciou): o intervalo volta para a fila
+                    pending.poll();
+                    giveBack(new long[]{job[1], job[2]});
+                    if (++lost >= MAX_LOST) {
+                        throw new RemoteException("Mining Error: node lost " + lost + " jobs in a row.");
+                    }
+                    continue;
+                }
+                lost = 0;
+                switch (status.getState()) {
+                    case FOUND:
+                        pending.poll();
+                        result.compareAndSet(MinerDistibuted.RANGE_EXHAUSTED, status.getResult());
+                        finished = true;
+                        cancel(node, pending);
+                        return;
+                    case EXHAUSTED:
+                        pending.poll();
+                        covered.addAndGet(job[2]);
+                        synchronized (this) {
+                            coveredByNode.merge(name, job[2], Long::sum);
+                            outstanding--;
+                        }
+                        break;
+                    case CANCELLED:
+                        // o nó foi parado por outro motivo (ex: bloco recebido da rede)
+                        pending.poll();
+                        giveBack(new long[]{job[1], job[2]});
+                        stop();
+                        cancel(node, pending);
+                        return;
+                    default:
+                        if (finished) {
+                            cancel(node, pending);
+                            return;
+                        }
+                        Thread.sleep(POLL_INTERVAL);
+                }
+            }
+        } catch (RemoteException ex) {
+            for (long[] job : pending) {
+                giveBack(new long[]{job[1], job[2]});
+            }
+            synchronized (this) {
+                dropped.add(name);
+            }
+        } catch (InterruptedException ex) {
+            stop();
+            cancel(node, pending);
+        }
+    }
+
+    /**
+     * Cancela no nó os trabalhos que ainda estão pendentes.
+     */
+    private static void cancel(RemoteNodeInterface node, Deque<long[]> pending) {
+        for (long[] job : pending) {
+            try {
+                node.cancelJob(job[0]);
+            } catch (RemoteException ex) {
+                return;
+            }
+        }
+        pending.clear();
+    }
+
+    /**
+     * @return O próximo intervalo {início, tamanho} ou null se não há trabalho.
+     */
+    private synchronized long[] take() {
+        if (finished) {
+            return null;
+        }
+        if (!returned.isEmpty()) {
+            outstanding++;
+            return returned.poll();
+        }
+        if (next >= space) {
+            return null;
+        }
+        long[] range = {next, Math.min(CHUNK, space - next)};
+        next += range[1];
+        outstanding++;
+        return range;
+    }
+
+    /**
+     * Devolve à fila um intervalo atribuído que não foi percorrido.
+     */
+    private synchronized void giveBack(long[] range) {
+        outstanding--;
+        returned.push(range);
+    }
+
+    /**
+     * @return true se já não há trabalho: solução encontrada, mineração
+     * parada, ou todo o espaço atribuído e terminado.
+     */
+    private synchronized boolean isDrained() {
+        return finished || (next >= space && returned.isEmpty() && outstanding == 0);
+    }
+
+    private static String nodeName(RemoteNodeInterface node) {
+        try {
+            return node.getAdress();
+        } catch (RemoteException ex) {
+            return node.toString();
+        }
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: RELATÓRIO
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+    /**
+     * @return Número de índices de intervalos percorridos por completo.
+     */
+    public long getCovered() {
+        return covered.get();
+    }
+
+    /**
+     * @return Fração do espaço de 2^32 nonces percorrida (acima de 1 quando o
+     * extraNonce foi usado).
+     */
+    public double getCoverage() {
+        return (double) covered.get() / ProofOfWork.NONCE_SPACE;
+    }
+
+    /**
+     * @return Resumo do trabalho feito por cada nó.
+     */
+    public synchronized String getReport() {
+        StringBuilder txt = new StringBuilder();
+        txt.append(String.format("Nonce space covered %.2f%% (%d nonces)", getCoverage() * 100, covered.get()));
+        long answer = result.get();
+        if (answer >= 0) {
+            txt.append(" - solution extraNonce ").append(ProofOfWork.extraNonce(answer))
+                    .append(" nonce ").append(ProofOfWork.nonce(answer));
+        }
+        for (Map.Entry<String, Long> e : coveredByNode.entrySet()) {
+            txt.append("\n  ").append(e.getKey()).append(" : ").append(e.getValue());
+        }
+        for (String name : dropped) {
+            txt.append("\n  ").append(name).append(" : dropped (range reassigned)");
+        }
+        return txt.toString();
+    }
+}
@@ -0,0 +1,214 @@
+package GUI;
+
+import core.ProofOfWork;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import utils.CryptoEngines;
+import utils.SHA256;
+
+/**
+ * Trabalho de mineração executado pelo {@link MiningPool}.
+ * <p>
+ * Um trabalho é um intervalo {@code [start, end[} de índices de trabalho
+ * ({@link ProofOfWork#work(int, int)}) sobre um cabeçalho. As threads do pool
+ * reservam lotes de {@link MiningPool#BATCH} índices de cada vez, por isso
+ * várias threads trabalham no mesmo intervalo sem se sobreporem.
+ * <p>
+ * O resultado é entregue num {@link CompletableFuture}: o índice vencedor, ou
+ * {@link MinerDistibuted#RANGE_EXHAUSTED} / {@link MinerDistibuted#RANGE_STOPPED}.
+ * Created on 18/10/2026, 17:32:50
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public class MiningJob {
+
+    private final long id;
+    private final byte[] header;
+    private final String headerTxt;
+    private final int dificulty;
+    private final int version;
+    private final long start;
+    private final long end;
+
+    // próximo índice por reservar
+    private final AtomicLong next;
+    // lotes reservados mas ainda não terminados
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder attempts = new LongAdder();
+    private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+    private volatile MiningStatus.State state = MiningStatus.State.QUEUED;
+    private volatile long startTime;
+    private volatile long endTime;
+
+    MiningJob(long id, byte[] header, int dificulty, int version, long start, long count) {
+        this.id = id;
+        this.header = header;
+        this.headerTxt = Base64.getEncoder().encodeToString(header);
+        this.dificulty = dificulty;
+        this.version = version;
+        this.start = start;
+        this.end = count > Long.MAX_VALUE - start ? Long.MAX_VALUE : start + count;
+        this.next = new AtomicLong(start);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return O resultado (índice vencedor ou código negativo) quando terminar.
+     */
+    public CompletableFuture<Long> future() {
+        return future;
+    }
+
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * @return true se ainda há índices por reservar.
+     */
+    boolean hasWork() {
+        return !future.isDone() && next.get() < end;
+    }
+
+    /**
+     * Cancela o trabalho. As threads largam-no no fim do lote atual.
+     *
+     * @return true se o trabalho ainda não tinha terminado.
+     */
+    public boolean cancel() {
+        return finish(MiningStatus.State.CANCELLED, MinerDistibuted.RANGE_STOPPED);
+    }
+
+    /**
+     * @return Fotografia do estado (para consulta remota).
+     */
+    public MiningStatus getStatus() {
+        long elapsed = startTime == 0 ? 0
+                : (endTime == 0 ? System.currentTimeMillis() : endTime) - startTime;
+        long result = future.isDone() ? future.getNow(MinerDistibuted.RANGE_STOPPED) : MinerDistibuted.RANGE_EXHAUSTED;
+        return new MiningStatus(id, state, result, attempts.sum(), elapsed);
+    }
+
+    private synchronized boolean finish(MiningStatus.State newState, long value) {
+        if (future.isDone()) {
+            return false;
+        }
+        state = newState;
+        endTime = System.currentTimeMillis();
+        return future.complete(value);
+    }
+
+    /**
+     * Executado por uma thread do pool: reserva e testa lotes até o trabalho
+     * terminar ou não haver mais índices por reservar.
+     *
+     * @param worker Índice da thread no pool.
+     * @param telemetry Estatísticas do pool (atualizadas por lote).
+     */
+    void work(int worker, MiningTelemetry telemetry) {
+        synchronized (this) {
+            if (state == MiningStatus.State.QUEUED) {
+                state = MiningStatus.State.RUNNING;
+                startTime = System.currentTimeMillis();
+            }
+        }
+        boolean text = version == ProofOfWork.VERSION_TEXT;
+        SHA256 sha = text ? null : ProofOfWork.kernel(version, header);
+        byte[] hash = new byte[32];
+        // versão de texto: cabeçalho Base64 + nonce em decimal, num buffer reutilizado
+        MessageDigest md = null;
+        byte[] textBuf = null;
+        if (text) {
+            try {
+                md = CryptoEngines.digest("SHA-256");
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException(ex);
+            }
+            byte[] prefix = headerTxt.getBytes(StandardCharsets.US_ASCII);
+            textBuf = Arrays.copyOf(prefix, prefix.length + 11); // "-2147483648"
+        }
+
+        while (!future.isDone()) {
+            inFlight.incrementAndGet();
+            long from = next.getAndAdd(MiningPool.BATCH);
+            if (from >= end || from < start) {
+                inFlight.decrementAndGet();
+                break;
+            }
+            long to = from > end - MiningPool.BATCH ? end : from + MiningPool.BATCH;
+            long begin = System.nanoTime();
+            long hit = -1;
+            long w = from;
+            while (w < to) {
+                if (text) {
+                    int length = putDecimal(textBuf, headerTxt.length(), ProofOfWork.nonce(w));
+                    md.update(textBuf, 0, length);
+                    try {
+                        md.digest(hash, 0, hash.length);
+                    } catch (DigestException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                } else {
+                    ProofOfWork.putWork(sha, version, w);
+                    sha.digest(hash);
+                }
+                if (ProofOfWork.checkDificulty(version, hash, dificulty)) {
+                    hit = w++;
+                    break;
+                }
+                w++;
+            }
+            // contar o lote antes de publicar a solução (as estatísticas do
+            // trabalho incluem a tentativa vencedora)
+            attempts.add(w - from);
+            telemetry.recordBatch(worker, w - from, begin, System.nanoTime());
+            if (hit >= 0) {
+                finish(MiningStatus.State.FOUND, hit);
+            }
+            inFlight.decrementAndGet();
+        }
+        // a última thread a sair de um intervalo esgotado fecha o trabalho
+        if (!future.isDone() && next.get() >= end && inFlight.get() == 0) {
+            finish(MiningStatus.State.EXHAUSTED, MinerDistibuted.RANGE_EXHAUSTED);
+        }
+    }
+
+    /**
+     * Escreve um inteiro em decimal (ASCII), como {@code Integer.toString}.
+     *
+     * @return Posição a seguir ao último dígito.
+     */
+    private static int putDecimal(byte[] buf, int pos, int value) {
+        long v = value;
+        if (v < 0) {
+            buf[pos++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long p = 10; p <= v; p *= 10) {
+            digits++;
+        }
+        int endPos = pos + digits;
+        for (int i = endPos - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        return endPos;
+    }
+}
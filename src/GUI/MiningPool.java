@@ -0,0 +1,171 @@
+package GUI;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serviço de mineração com um pool fixo de threads (uma por núcleo).
+ * <p>
+ * As threads são criadas uma única vez e ficam à espera de trabalho. Os
+ * trabalhos ({@link MiningJob}) entram numa fila e são executados por ordem,
+ * com todas as threads no mesmo trabalho:
+ * <ul>
+ * <li><b>Sem criação de threads:</b> mudar de bloco candidato é cancelar um
+ * trabalho e submeter outro - as threads passam para o novo no fim do lote
+ * atual ({@link #BATCH} hashes).</li>
+ * <li><b>Assíncrono:</b> {@link #submit} devolve logo; o resultado chega pelo
+ * {@link MiningJob#future()} ou por consulta ({@link #getJob(long)}).</li>
+ * <li><b>Encadeado:</b> quando já não há índices por reservar num trabalho,
+ * as threads livres começam o seguinte enquanto as outras acabam os seus
+ * lotes.</li>
+ * </ul>
+ * Existe uma instância por processo ({@link #getInstance()}).
+ * Created on 18/10/2026, 17:25:03
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public class MiningPool {
+
+    /**
+     * Número de índices reservados de cada vez por uma thread.
+     */
+    public static final int BATCH = 4096;
+
+    /**
+     * Número de trabalhos terminados que continuam disponíveis para consulta.
+     */
+    static final int HISTORY = 256;
+
+    private static MiningPool instance;
+
+    /**
+     * @return O pool do processo (criado no primeiro acesso).
+     */
+    public static synchronized MiningPool getInstance() {
+        if (instance == null) {
+            instance = new MiningPool(Runtime.getRuntime().availableProcessors());
+        }
+        return instance;
+    }
+
+    private final Thread[] workers;
+    private final ArrayDeque<MiningJob> queue = new ArrayDeque<>();
+    private final AtomicLong ids = new AtomicLong();
+    private MiningJob current;
+    private final MiningTelemetry telemetry;
+
+    // trabalhos conhecidos (ativos e os últimos terminados)
+    private final Map<Long, MiningJob> jobs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, MiningJob> eldest) {
+            return size() > HISTORY && eldest.getValue().isDone();
+        }
+    };
+
+    private MiningPool(int threads) {
+        workers = new Thread[threads];
+        telemetry = new MiningTelemetry(threads);
+        for (int i = 0; i < threads; i++) {
+            int worker = i;
+            workers[i] = new Thread(() -> runWorker(worker), "miner-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Coloca um trabalho na fila.
+     *
+     * @param header Cabeçalho do bloco.
+     * @param dificulty Dificuldade exigida.
+     * @param version Versão do Proof of Work.
+     * @param start Primeiro índice de trabalho.
+     * @param count Número de índices.
+     * @return O trabalho (já na fila).
+     */
+    public synchronized MiningJob submit(byte[] header, int dificulty, int version, long start, long count) {
+        MiningJob job = new MiningJob(ids.incrementAndGet(), header, dificulty, version, start, count);
+        jobs.put(job.getId(), job);
+        job.future().whenComplete((w, ex) -> telemetry.recordJob(job.getStatus()));
+        queue.add(job);
+        notifyAll();
+        return job;
+    }
+
+    /**
+     * @return O trabalho com este ID, ou null se não existir (ou já foi
+     * esquecido).
+     */
+    public synchronized MiningJob getJob(long id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Cancela um trabalho (na fila ou em execução).
+     *
+     * @return true se o trabalho foi cancelado.
+     */
+    public synchronized boolean cancel(long id) {
+        MiningJob job = jobs.get(id);
+        if (job == null) {
+            return false;
+        }
+        queue.remove(job);
+        return job.cancel();
+    }
+
+    /**
+     * @return true se há trabalhos por terminar.
+     */
+    public synchronized boolean isBusy() {
+        return (current != null && !current.isDone()) || !queue.isEmpty();
+    }
+
+    /**
+     * @param node Nome do nó (para a vista da rede), ou null.
+     * @return Estatísticas de mineração deste processo.
+     */
+    public MiningStats getStats(String node) {
+        return telemetry.snapshot(node);
+    }
+
+    /**
+     * @return Número de threads de mineração.
+     */
+    public int getThreads() {
+        return workers.length;
+    }
+
+    /**
+     * Escolhe o trabalho para uma thread: o atual se ainda tiver índices por
+     * reservar, senão o próximo da fila (espera se não houver nenhum).
+     */
+    private synchronized MiningJob nextJob() throws InterruptedException {
+        while (true) {
+            if (current != null && current.hasWork()) {
+                return current;
+            }
+            current = null;
+            MiningJob job;
+            while ((job = queue.poll()) != null) {
+                if (job.hasWork()) {
+                    current = job;
+                    return job;
+                }
+            }
+            wait();
+        }
+    }
+
+    private void runWorker(int worker) {
+        try {
+            while (true) {
+                nextJob().work(worker, telemetry);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package GUI;
+
+import java.io.Serializable;
+import java.rmi.RemoteException;
+import java.util.List;
+
+/**
+ * Estatísticas de mineração de um nó (fotografia), devolvidas pela rede em
+ * {@link RemoteNodeInterface#getMiningStats()} e enviadas periodicamente ao
+ * {@link MinerListener}.
+ * <p>
+ * Servem para dimensionar a rede e escolher a dificuldade: o débito total
+ * ({@link #getHashRate()}) e a média de tentativas por solução
+ * ({@link #getAvgSolveAttempts()}, que estima 2^dificuldade) dão o tempo
+ * esperado por bloco.
+ * Created on 18/10/2026, 18:20:54
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public class MiningStats implements Serializable {
+
+    private final String node;
+    private final double[] threadRates;
+    private final long[] threadHashes;
+    private final long jobsFound;
+    private final long jobsExhausted;
+    private final long jobsCancelled;
+    private final long lastJobAttempts;
+    private final long avgSolveMillis;
+    private final long avgSolveAttempts;
+    private final long[] solveHistogram;
+
+    public MiningStats(String node, double[] threadRates, long[] threadHashes,
+            long jobsFound, long jobsExhausted, long jobsCancelled, long lastJobAttempts,
+            long avgSolveMillis, long avgSolveAttempts, long[] solveHistogram) {
+        this.node = node;
+        this.threadRates = threadRates;
+        this.threadHashes = threadHashes;
+        this.jobsFound = jobsFound;
+        this.jobsExhausted = jobsExhausted;
+        this.jobsCancelled = jobsCancelled;
+        this.lastJobAttempts = lastJobAttempts;
+        this.avgSolveMillis = avgSolveMillis;
+        this.avgSolveAttempts = avgSolveAttempts;
+        this.solveHistogram = solveHistogram;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * @return Débito atual de cada thread (H/s, 0 se parada).
+     */
+    public double[] getThreadRates() {
+        return threadRates.clone();
+    }
+
+    /**
+     * @return Hashes calculados por cada thread desde o arranque.
+     */
+    public long[] getThreadHashes() {
+        return threadHashes.clone();
+    }
+
+    /**
+     * @return Débito atual do nó (H/s).
+     */
+    public double getHashRate() {
+        double total = 0;
+        for (double r : threadRates) {
+            total += r;
+        }
+        return total;
+    }
+
+    /**
+     * @return Hashes calculados pelo nó desde o arranque.
+     */
+    public long getTotalHashes() {
+        long total = 0;
+        for (long h : threadHashes) {
+            total += h;
+        }
+        return total;
+    }
+
+    public long getJobsFound() {
+        return jobsFound;
+    }
+
+    public long getJobsExhausted() {
+        return jobsExhausted;
+    }
+
+    public long getJobsCancelled() {
+        return jobsCancelled;
+    }
+
+    /**
+     * @return Tentativas do último trabalho terminado.
+     */
+    public long getLastJobAttempts() {
+        return lastJobAttempts;
+    }
+
+    /**
+     * @return Tempo médio até à solução (ms).
+     */
+    public long getAvgSolveMillis() {
+        return avgSolveMillis;
+    }
+
+    /**
+     * @return Tentativas médias até à solução (aproximado: não inclui os lotes
+     * que ainda estavam a ser calculados quando a solução apareceu).
+     */
+    public long getAvgSolveAttempts() {
+        return avgSolveAttempts;
+    }
+
+    /**
+     * @return Histograma do tempo até à solução: a posição 0 conta as soluções
+     * em menos de 1 ms, a posição i as soluções em [2^(i-1), 2^i[ ms.
+     */
+    public long[] getSolveHistogram() {
+        return solveHistogram.clone();
+    }
+
+    /**
+     * @return O histograma em texto (só as classes não vazias).
+     */
+    public String getHistogramReport() {
+        StringBuilder txt = new StringBuilder();
+        for (int i = 0; i < solveHistogram.length; i++) {
+            if (solveHistogram[i] > 0) {
+                long from = i == 0 ? 0 : 1L << (i - 1);
+                txt.append(String.format("  %8d ms .. : %d%n", from, solveHistogram[i]));
+            }
+        }
+        return txt.toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s%.0f H/s (%d threads) hashes %d found %d exhausted %d cancelled %d avg solve %d ms / %d attempts",
+                node == null ? "" : node + " : ", getHashRate(), threadRates.length, getTotalHashes(),
+                jobsFound, jobsExhausted, jobsCancelled, avgSolveMillis, avgSolveAttempts);
+    }
+
+    /**
+     * Débito de toda a rede: consulta cada nó e soma os débitos.
+     *
+     * @param nodes Nós a consultar (incluindo o local).
+     * @return Relatório com o débito de cada nó e o total.
+     */
+    public static String networkReport(List<RemoteNodeInterface> nodes) {
+        StringBuilder txt = new StringBuilder();
+        double total = 0;
+        int threads = 0;
+        for (RemoteNodeInterface node : nodes) {
+            try {
+                MiningStats stats = node.getMiningStats();
+                total += stats.getHashRate();
+                threads += stats.threadRates.length;
+                txt.append("\n  ").append(stats);
+            } catch (RemoteException ex) {
+                txt.append("\n  ").append(node).append(" : unreachable");
+            }
+        }
+        return String.format("Network hash rate %.0f H/s (%d nodes, %d threads)", total, nodes.size(), threads) + txt;
+    }
+
+    //::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    private static final long serialVersionUID = 202610181820L;
+}
@@ -0,0 +1,85 @@
+package GUI;
+
+import java.io.Serializable;
+
+/**
+ * Estado de um trabalho de mineração ({@link MiningJob}), tal como é devolvido
+ * pela rede em {@link RemoteNodeInterface#pollJob(long)}.
+ * Created on 18/10/2026, 17:40:16
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public class MiningStatus implements Serializable {
+
+    /**
+     * Ciclo de vida de um trabalho.
+     */
+    public enum State {
+        /** À espera na fila do pool. */
+        QUEUED,
+        /** Em execução pelas threads do pool. */
+        RUNNING,
+        /** Solução encontrada ({@link #getResult()}). */
+        FOUND,
+        /** Intervalo percorrido sem solução. */
+        EXHAUSTED,
+        /** Cancelado antes do fim. */
+        CANCELLED;
+
+        public boolean isDone() {
+            return this == FOUND || this == EXHAUSTED || this == CANCELLED;
+        }
+    }
+
+    private final long jobId;
+    private final State state;
+    private final long result;
+    private final long attempts;
+    private final long elapsed;
+
+    public MiningStatus(long jobId, State state, long result, long attempts, long elapsed) {
+        this.jobId = jobId;
+        this.state = state;
+        this.result = result;
+        this.attempts = attempts;
+        this.elapsed = elapsed;
+    }
+
+    public long getJobId() {
+        return jobId;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return O índice de trabalho vencedor (só em {@link State#FOUND}).
+     */
+    public long getResult() {
+        return result;
+    }
+
+    /**
+     * @return Número de hashes calculados até agora.
+     */
+    public long getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @return Tempo de execução (ms).
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return "job " + jobId + " " + state + " attempts " + attempts + " (" + elapsed + " ms)"
+                + (state == State.FOUND ? " work " + result : "");
+    }
+
+    //::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    private static final long serialVersionUID = 202610181740L;
+}
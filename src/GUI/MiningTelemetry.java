@@ -0,0 +1,136 @@
+package GUI;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recolha das estatísticas de mineração do {@link MiningPool}.
+ * <p>
+ * Os contadores são atualizados uma vez por lote ({@link MiningPool#BATCH}
+ * hashes) e não por hash, por isso o custo no ciclo de mineração é de duas
+ * leituras do relógio e algumas operações atómicas por cada 4096 hashes:
+ * <ul>
+ * <li><b>Por thread:</b> hashes calculados e débito (H/s) numa média móvel
+ * exponencial dos lotes - uma thread sem lotes há mais de {@link #IDLE} conta
+ * como parada.</li>
+ * <li><b>Por trabalho:</b> resultado (encontrado, esgotado, cancelado) e
+ * tentativas.</li>
+ * <li><b>Soluções:</b> histograma do tempo até à solução, em potências de 2
+ * (ms), e médias de tempo e tentativas - a média de tentativas estima
+ * 2^dificuldade e ajuda a escolher a dificuldade.</li>
+ * </ul>
+ * Created on 18/10/2026, 18:12:37
+ *
+ * @author aluno_25979, aluno_25946
+ */
+final class MiningTelemetry {
+
+    /**
+     * Peso de um lote novo na média móvel do débito.
+     */
+    static final double ALPHA = 0.2;
+    /**
+     * Tempo sem lotes a partir do qual uma thread conta como parada (ns).
+     */
+    static final long IDLE = 1_000_000_000L;
+    /**
+     * Número de classes do histograma (a última não tem limite superior).
+     */
+    static final int BUCKETS = 24;
+
+    private final AtomicLongArray hashes;
+    // débito por thread (bits de um double)
+    private final AtomicLongArray rates;
+    // System.nanoTime() do fim do último lote de cada thread
+    private final AtomicLongArray lastBatch;
+
+    private final LongAdder found = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder solveMillis = new LongAdder();
+    private final LongAdder solveAttempts = new LongAdder();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+    private volatile long lastJobAttempts;
+
+    MiningTelemetry(int threads) {
+        hashes = new AtomicLongArray(threads);
+        rates = new AtomicLongArray(threads);
+        lastBatch = new AtomicLongArray(threads);
+    }
+
+    /**
+     * Regista um lote calculado por uma thread.
+     *
+     * @param worker Índice da thread.
+     * @param count Hashes calculados.
+     * @param begin Início do lote (System.nanoTime()).
+     * @param end Fim do lote (System.nanoTime()).
+     */
+    void recordBatch(int worker, long count, long begin, long end) {
+        hashes.addAndGet(worker, count);
+        lastBatch.set(worker, end);
+        if (end <= begin || count == 0) {
+            return;
+        }
+        double rate = count * 1e9 / (end - begin);
+        double old = Double.longBitsToDouble(rates.get(worker));
+        rates.set(worker, Double.doubleToRawLongBits(old == 0 ? rate : old + ALPHA * (rate - old)));
+    }
+
+    /**
+     * Regista o fim de um trabalho.
+     *
+     * @param status Estado final do trabalho.
+     */
+    void recordJob(MiningStatus status) {
+        lastJobAttempts = status.getAttempts();
+        switch (status.getState()) {
+            case FOUND:
+                found.increment();
+                solveMillis.add(status.getElapsed());
+                solveAttempts.add(status.getAttempts());
+                histogram.incrementAndGet(bucket(status.getElapsed()));
+                break;
+            case EXHAUSTED:
+                exhausted.increment();
+                break;
+            default:
+                cancelled.increment();
+        }
+    }
+
+    /**
+     * @return A classe do histograma: 0 para menos de 1 ms, i para
+     * [2^(i-1), 2^i[ ms.
+     */
+    static int bucket(long millis) {
+        int b = millis <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(millis);
+        return Math.min(BUCKETS - 1, b);
+    }
+
+    /**
+     * @param node Nome do nó (pode ser null).
+     * @return Fotografia das estatísticas.
+     */
+    MiningStats snapshot(String node) {
+        int threads = hashes.length();
+        long now = System.nanoTime();
+        double[] threadRates = new double[threads];
+        long[] threadHashes = new long[threads];
+        for (int i = 0; i < threads; i++) {
+            threadHashes[i] = hashes.get(i);
+            long last = lastBatch.get(i);
+            threadRates[i] = last == 0 || now - last > IDLE ? 0 : Double.longBitsToDouble(rates.get(i));
+        }
+        long[] hist = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            hist[i] = histogram.get(i);
+        }
+        long solved = found.sum();
+        return new MiningStats(node, threadRates, threadHashes,
+                solved, exhausted.sum(), cancelled.sum(), lastJobAttempts,
+                solved == 0 ? 0 : solveMillis.sum() / solved,
+                solved == 0 ? 0 : solveAttempts.sum() / solved,
+                hist);
+    }
+}
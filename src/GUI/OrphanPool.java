@@ -0,0 +1,187 @@
+package GUI;
+
+import core.Block;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Blocos órfãos: blocos válidos que chegaram antes do bloco anterior.
+ * <p>
+ * Com a propagação em malha os blocos chegam muitas vezes fora de ordem. Em
+ * vez de serem descartados, os órfãos ficam aqui, indexados pelo
+ * {@code previousHash}, até o pai entrar na cadeia ({@link #take(byte[])}).
+ * <ul>
+ * <li><b>Limite:</b> no máximo {@link #MAX_ORPHANS} blocos e
+ * {@link #MAX_BYTES} bytes; quando cheio sai o órfão mais antigo.</li>
+ * <li><b>Validade:</b> um órfão cujo pai não chega em {@link #EXPIRY_MS} é
+ * removido ({@link #expire(long)}).</li>
+ * </ul>
+ * Só guarda blocos que já passaram a validação sem estado
+ * ({@link BlockPipeline#verify(Block)}), por isso encher o pool exige Proof of
+ * Work.
+ * Created on 18/10/2026, 23:21:36
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public class OrphanPool {
+
+    /**
+     * Número máximo de blocos órfãos.
+     */
+    public static final int MAX_ORPHANS = 256;
+
+    /**
+     * Tamanho máximo (bytes serializados) de todos os órfãos.
+     */
+    public static final long MAX_BYTES = 32L * 1024 * 1024;
+
+    /**
+     * Tempo máximo à espera do bloco anterior.
+     */
+    public static final long EXPIRY_MS = 10 * 60 * 1000;
+
+    /**
+     * Um bloco à espera do pai.
+     */
+    public static final class Orphan {
+
+        final Block block;
+        final byte[] data;
+        final long received;
+
+        Orphan(Block block, byte[] data, long received) {
+            this.block = block;
+            this.data = data;
+            this.received = received;
+        }
+
+        /**
+         * @return O bloco.
+         */
+        public Block getBlock() {
+            return block;
+        }
+
+        /**
+         * @return Bytes do bloco, tal como foram recebidos.
+         */
+        public byte[] getData() {
+            return data;
+        }
+    }
+
+    // órfãos por hash do próprio bloco, por ordem de chegada (o primeiro é o mais antigo)
+    private final LinkedHashMap<String, Orphan> byHash = new LinkedHashMap<>();
+    // órfãos por hash do bloco anterior
+    private final Map<String, List<Orphan>> byParent = new HashMap<>();
+    private long bytes;
+
+    /**
+     * Guarda um órfão até o bloco anterior chegar.
+     *
+     * @param b Bloco cujo pai ainda não está na cadeia.
+     * @param data Bytes do bloco.
+     * @return false se o bloco já estava no pool.
+     */
+    public synchronized boolean add(Block b, byte[] data) {
+        String hash = key(b.getCurrentHash());
+        if (byHash.containsKey(hash)) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        expire(now);
+        while (!byHash.isEmpty() && (byHash.size() >= MAX_ORPHANS || bytes + data.length > MAX_BYTES)) {
+            remove(byHash.values().iterator().next());
+        }
+        Orphan o = new Orphan(b, data, now);
+        byHash.put(hash, o);
+        byParent.computeIfAbsent(key(b.getPreviousHash()), k -> new ArrayList<>()).add(o);
+        bytes += data.length;
+        return true;
+    }
+
+    /**
+     * Retira os órfãos que esperavam por um bloco.
+     *
+     * @param parentHash Hash do bloco que acabou de entrar na cadeia.
+     * @return Os filhos desse bloco (vazio se não há).
+     */
+    public synchronized List<Orphan> take(byte[] parentHash) {
+        List<Orphan> children = byParent.remove(key(parentHash));
+        if (children == null) {
+            return new ArrayList<>();
+        }
+        for (Orphan o : children) {
+            byHash.remove(key(o.block.getCurrentHash()));
+            bytes -= o.data.length;
+        }
+        return children;
+    }
+
+    /**
+     * Remove os órfãos recebidos há mais de {@link #EXPIRY_MS}.
+     *
+     * @param now Instante atual (ms).
+     * @return Número de órfãos removidos.
+     */
+    public synchronized int expire(long now) {
+        int count = 0;
+        Iterator<Orphan> it = byHash.values().iterator();
+        // por ordem de chegada: para no primeiro que ainda é válido
+        while (it.hasNext()) {
+            Orphan o = it.next();
+            if (now - o.received <= EXPIRY_MS) {
+                break;
+            }
+            it.remove();
+            unlinkParent(o);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return Número de órfãos.
+     */
+    public synchronized int size() {
+        return byHash.size();
+    }
+
+    /**
+     * @return Bytes ocupados pelos órfãos.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    private void remove(Orphan o) {
+        byHash.remove(key(o.block.getCurrentHash()));
+        unlinkParent(o);
+    }
+
+    private void unlinkParent(Orphan o) {
+        String parent = key(o.block.getPreviousHash());
+        List<Orphan> siblings = byParent.get(parent);
+        if (siblings != null) {
+            siblings.remove(o);
+            if (siblings.isEmpty()) {
+                byParent.remove(parent);
+            }
+        }
+        bytes -= o.data.length;
+    }
+
+    private static String key(byte[] hash) {
+        return Base64.getEncoder().encodeToString(hash);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "OrphanPool[" + byHash.size() + " blocks, " + bytes + " bytes]";
+    }
+}
@@ -70,7 +70,8 @@ public interface RemoteNodeInterface extends Remote {
 
     /**
      * Obtém a Blockchain completa deste nó.
-     * Cuidado: Pode ser um objeto muito pesado.
+     * Cuidado: Pode ser um objeto muito pesado. A sincronização usa
+     * {@link #getChainTip()} e os pedidos por intervalos ({@link ChainSync}).
      * @return A instância da Blockchain.
      * @throws RemoteException Erro de rede.
      */
@@ -78,11 +79,48 @@ public interface RemoteNodeInterface extends Remote {
     
     /**
      * Obtém a Blockchain em formato binário (byte array).
-     * Mais eficiente para transmissão pela rede.
+     * Cuidado: envia a pasta de blocos inteira. A sincronização descarrega
+     * só os blocos em falta ({@link #getBlocks(int, int)}).
      * @return Bytes serializados da Blockchain.
      * @throws RemoteException Erro de rede.
      */
     public byte[] getBlockchainData() throws RemoteException;
+
+    /**
+     * Resumo do topo da cadeia deste nó (altura e último cabeçalho).
+     * @return O topo, ou null se o nó não tem cadeia.
+     * @throws RemoteException Erro de rede.
+     */
+    public core.ChainTip getChainTip() throws RemoteException;
+
+    /**
+     * Procura o último bloco em comum com a cadeia de quem chama.
+     * @param locator Localizador da cadeia de quem chama
+     * ({@link core.BlockChain#getLocator()}).
+     * @return ID do último bloco em comum, ou -1 se não há nenhum.
+     * @throws RemoteException Erro de rede.
+     */
+    public int findCommonAncestor(List<core.BlockHeader> locator) throws RemoteException;
+
+    /**
+     * Cabeçalhos de um intervalo de blocos (sem os corpos).
+     * @param from ID do primeiro bloco.
+     * @param count Número de cabeçalhos (no máximo
+     * {@link core.BlockChain#MAX_HEADERS}).
+     * @return Os cabeçalhos existentes no intervalo.
+     * @throws RemoteException Erro de rede.
+     */
+    public List<core.BlockHeader> getHeaders(int from, int count) throws RemoteException;
+
+    /**
+     * Blocos serializados de um intervalo. Pode devolver menos blocos do que
+     * os pedidos (limite de bytes por resposta).
+     * @param from ID do primeiro bloco.
+     * @param count Número de blocos pedidos.
+     * @return Os blocos serializados, por ordem de ID.
+     * @throws RemoteException Erro de rede.
+     */
+    public List<byte[]> getBlocks(int from, int count) throws RemoteException;
     
     /**
      * Recebe um novo bloco minerado e tenta adicioná-lo à cadeia local.
@@ -111,18 +149,64 @@ public interface RemoteNodeInterface extends Remote {
      */
     public List<String> getTransactions() throws RemoteException;
 
+    /**
+     * Anuncia transações novas pelo hash ({@link TransactionGossip}).
+     * Não bloqueia: este nó pede depois ao anunciante as que não tem.
+     * @param from O nó que anuncia (a quem pedir os dados).
+     * @param ids Hashes (Base64) das transações.
+     * @throws RemoteException Erro de rede.
+     */
+    public void announceTransactions(RemoteNodeInterface from, List<String> ids) throws RemoteException;
+
+    /**
+     * Obtém os hashes das transações pendentes neste nó.
+     * @return Lista de hashes (Base64), pela ordem de {@link #getTransactions()}.
+     * @throws RemoteException Erro de rede.
+     */
+    public List<String> getTransactionIds() throws RemoteException;
+
+    /**
+     * Obtém as transações pendentes pedidas.
+     * @param ids Hashes (Base64) das transações.
+     * @return Lista de Strings (Base64) das transações pedidas que este nó tem.
+     * @throws RemoteException Erro de rede.
+     */
+    public List<String> getTransactionData(List<String> ids) throws RemoteException;
+
     // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
     // :: CONTROLO DE MINERAÇÃO (MINER)
     // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
     
     /**
-     * Comanda o nó remoto a iniciar a mineração de um bloco.
-     * @param message O cabeçalho do bloco a minerar.
-     * @param dificulty A dificuldade (número de zeros) exigida.
-     * @return O nonce encontrado (se esperar pelo fim) ou 0 se for assíncrono.
+     * Submete ao nó remoto um trabalho de mineração sobre um intervalo de
+     * índices de trabalho (disjunto dos intervalos dos outros nós - ver
+     * {@link MiningCoordinator}). Não bloqueia: o trabalho entra na fila do
+     * pool de mineração do nó ({@link MiningPool}).
+     * @param message O cabeçalho do bloco a minerar (Base64).
+     * @param dificulty A dificuldade exigida.
+     * @param version Versão do Proof of Work ({@link core.ProofOfWork}).
+     * @param start Primeiro índice do intervalo ({@link core.ProofOfWork#work}).
+     * @param count Número de índices do intervalo.
+     * @return O ID do trabalho (para {@link #pollJob} e {@link #cancelJob}).
+     * @throws RemoteException Erro de rede.
+     */
+    public long submitJob(String message, int dificulty, int version, long start, long count) throws RemoteException;
+
+    /**
+     * Consulta o estado de um trabalho submetido.
+     * @param jobId ID devolvido por {@link #submitJob}.
+     * @return O estado do trabalho, ou null se o nó não o conhece.
+     * @throws RemoteException Erro de rede.
+     */
+    public MiningStatus pollJob(long jobId) throws RemoteException;
+
+    /**
+     * Cancela um trabalho submetido (ex: mudou o bloco candidato).
+     * @param jobId ID devolvido por {@link #submitJob}.
+     * @return true se o trabalho foi cancelado antes de terminar.
      * @throws RemoteException Erro de rede.
      */
-    public int mine(String message, int dificulty) throws RemoteException;
+    public boolean cancelJob(long jobId) throws RemoteException;
     
     /**
      * Comanda o nó remoto a parar a mineração.
@@ -147,4 +231,13 @@ public interface RemoteNodeInterface extends Remote {
     /** *  @return O hash do último bloco minerado.
      * @throws java.rmi.RemoteException */
     public String getHash() throws RemoteException;
+
+    /**
+     * Estatísticas de mineração do nó: débito (H/s) por thread e total,
+     * trabalhos e histograma do tempo até à solução.
+     * Ver {@link MiningStats#networkReport} para a vista de toda a rede.
+     * @return Fotografia das estatísticas.
+     * @throws RemoteException Erro de rede.
+     */
+    public MiningStats getMiningStats() throws RemoteException;
 }
\ No newline at end of file
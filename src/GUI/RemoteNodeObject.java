@@ -17,6 +17,8 @@ import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import utils.RMI;
@@ -30,9 +32,9 @@ import utils.RMI;
  * Responsabilidades:
  * <ul>
  * <li><b>Rede:</b> Gerir lista de vizinhos e conexões.</li>
- * <li><b>Blockchain:</b> Sincronizar a cadeia mais longa (Consenso) e validar blocos.</li>
+ * <li><b>Blockchain:</b> Sincronizar a cadeia com mais trabalho (Consenso) e validar blocos.</li>
  * <li><b>Mineração:</b> Controlar a thread de mineração local.</li>
- * <li><b>Dados:</b> Propagar transações e buscar utilizadores.</li>
+ * <li><b>Dados:</b> Propagar transações (anúncio e pedido, {@link TransactionGossip}) e buscar utilizadores.</li>
  * </ul>
  */
 public class RemoteNodeObject extends UnicastRemoteObject implements RemoteNodeInterface {
@@ -48,7 +50,10 @@ public class RemoteNodeObject extends UnicastRemoteObject implements RemoteNodeI
     Set<RemoteNodeInterface> network;
     
     /** Mempool: Transações pendentes à espera de serem mineradas. */
-    Set<String> transactions; 
+    Mempool transactions;
+
+    /** Propagação das transações: anúncio dos hashes e pedido das em falta. */
+    TransactionGossip gossip;
     
     /** Bridge para enviar eventos para a GUI. */
     Nodelistener listener;
@@ -56,6 +61,16 @@ public class RemoteNodeObject extends UnicastRemoteObject implements RemoteNodeI
     /** Motor de mineração local. */
     MinerDistibuted miner = new MinerDistibuted();
 
+    /** Sincronizações da cadeia, uma de cada vez, fora das chamadas RMI. */
+    final ExecutorService syncExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "chain-sync");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Receção de blocos: validação em paralelo, escrita por ordem, pós-processamento. */
+    final BlockPipeline pipeline = new BlockPipeline(this::commitBlock, this::afterBlock);
+
     /**
      * Construtor do Objeto Remoto.
      * Inicia o serviço RMI na porta especificada.
@@ -72,7 +87,8 @@ public class RemoteNodeObject extends UnicastRemoteObject implements RemoteNodeI
             
             // Inicializa coleções Thread-Safe para concorrência
             this.network = new CopyOnWriteArraySet<>();
-            this.transactions = new CopyOnWriteArraySet<>();
+            this.transactions = new Mempool(Mempool.roleOfSender());
+            this.gossip = new TransactionGossip(this, network, transactions, this::transactionAdded);
 
             this.listener = listener;
             
@@ -209,8 +225,9 @@ public class RemoteNodeObject extends UnicastRemoteObject implements RemoteNodeI
     /**
      * Adiciona um novo nó à rede e inicia a SINCRONIZAÇÃO DA BLOCKCHAIN.
      * <p>
-     * Este método implementa a regra da "Cadeia Mais Longa".
-     * Se o nó remoto tiver uma blockchain maior, este nó faz download de tudo e substitui a sua.
+     * Este método implementa a regra da "Cadeia com Mais Trabalho".
+     * Se o nó remoto tiver uma blockchain com mais trabalho acumulado, este nó
+     * descarrega só os blocos em falta ({@link ChainSync}).
      */
     @Override
     public void addNode(RemoteNodeInterface node) throws RemoteException {
@@ -219,86 +236,22 @@ public class RemoteNodeObject extends UnicastRemoteObject implements RemoteNodeI
         }
         network.add(node);
         
-        // Sincronizar transações pendentes
-        this.transactions.addAll(node.getTransactions());
+        // Sincronizar transações pendentes (só as que faltam, fora da chamada RMI)
+        gossip.requestAll(node);
 
-        // :::::::::: SYNC: DOWNLOAD DA BLOCKCHAIN ::::::::::
-        try {
-            System.out.println("A iniciar sincronização com " + node.getAdress());
-
-            // 1. Comparar tamanhos
-            core.BlockChain remoteChain = node.getBlockchain();
-            core.BlockChain localChain = null;
+        // :::::::::: SYNC: SÓ OS BLOCOS EM FALTA (HEADERS-FIRST) ::::::::::
+        // Fora da chamada RMI: os blocos vêm de todos os vizinhos em paralelo
+        syncExecutor.execute(() -> {
             try {
-                localChain = core.BlockChain.load(core.BlockChain.FILE_PATH + "blockchain.bch");
-            } catch (Exception e) {
-                localChain = null; // Assumimos vazio se der erro
-            }
-
-            boolean devoAtualizar = false;
-
-            if (remoteChain != null) {
-                if (localChain == null) {
-                    devoAtualizar = true; // Sou novo na rede
-                } else {
-                    // A cadeia remota é maior? (Regra de Ouro)
-                    if (remoteChain.getLastBlock().getID() > localChain.getLastBlock().getID()) {
-                        devoAtualizar = true;
-                    }
-                }
-            }
-
-            // 2. Executar Atualização (Download de ZIP)
-            if (devoAtualizar) {
-                System.out.println("SYNC: Recebida blockchain maior. A atualizar...");
-
-                // Download dos dados brutos
-                byte[] zipData = node.getBlockchainData(); 
-
-                if (zipData != null && zipData.length > 0) {
-                    java.io.File folder = new java.io.File("data_blocks");
-                    
-                    // A. Limpar estado atual (Reset)
-                    if (folder.exists()) {
-                        java.io.File[] files = folder.listFiles();
-                        if (files != null) {
-                            for (java.io.File f : files) {
-                                if (f.isFile()) f.delete();
-                            }
-                        }
-                    } else {
-                        folder.mkdirs();
-                    }
-
-                    // B. Instalar novos dados
-                    utils.Zip.unzipFolder(zipData, folder);
-                    System.out.println("SYNC: Ficheiros descomprimidos com sucesso.");
-
-                    // C. Atualizar Memória e Carteiras
-                    try {
-                        core.BlockChain novaChain = core.BlockChain.load(core.BlockChain.FILE_PATH + "blockchain.bch");
-                        
-                        // Recalcular saldos com base no novo histórico
-                        if (novaChain != null) {
-                            SaudeCerteira.SaudeWallet.updateWallets(novaChain.getLastBlock());
-                        }
-                    } catch (Exception ex) {
-                        System.out.println("Erro ao carregar nova blockchain: " + ex.getMessage());
-                    }
-
-                    // Notificar GUI para atualizar
-                    if (listener != null) {
-                        listener.onTransaction("BlockReceived");
-                    }
+                System.out.println("A iniciar sincronização com " + node.getAdress());
+                if (new ChainSync(node, network, listener, activeSearches, this::applyUpdate).run() > 0) {
+                    // Blocos recebidos fora de ordem que esperavam por estes
+                    pipeline.releaseOrphans(getChainTip().getTop().getCurrentHash());
                 }
-            } else {
-                System.out.println("SYNC: A minha blockchain já está atualizada.");
+            } catch (Exception e) {
+                System.err.println("Erro no SYNC: " + e.getMessage());
             }
-
-        } catch (Exception e) {
-            System.err.println("Erro no SYNC: " + e.getMessage());
-            e.printStackTrace();
-        }
+        });
         // :::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
 
         // Conexão Bidirecional
@@ -325,23 +278,25 @@ public class RemoteNodeObject extends UnicastRemoteObject implements RemoteNodeI
     
     @Override
     public void addTransaction(String dataBase64) throws RemoteException {
-        // Evitar duplicados e loops infinitos
-        if (this.transactions.contains(dataBase64)) {
+        // 1. Guardar Localmente
+        // (duplicados, transações inválidas ou mempool cheia: não propagar,
+        // o que também evita loops infinitos)
+        String id = this.transactions.add(dataBase64);
+        if (id == null) {
             return;
         }
 
-        // 1. Guardar Localmente
-        this.transactions.add(dataBase64);
-
-        // 2. Propagar para Vizinhos (Flooding)
-        for (RemoteNodeInterface node : network) {
-            try {
-                node.addTransaction(dataBase64);
-            } catch (Exception e) {
-            } 
-        }
+        // 2. Anunciar aos Vizinhos (só o hash, no próximo envio)
+        gossip.announce(id, null);
 
         // 3. Atualizar GUI
+        transactionAdded(dataBase64);
+    }
+
+    /**
+     * Avisa a GUI de uma transação nova (local ou pedida a um vizinho).
+     */
+    private void transactionAdded(String dataBase64) {
         if (listener != null) {
             listener.onTransaction(dataBase64);
         } else {
@@ -351,7 +306,22 @@ public class RemoteNodeObject extends UnicastRemoteObject implements RemoteNodeI
 
     @Override
     public List<String> getTransactions() throws RemoteException {
-        return new ArrayList<>(transactions);
+        return transactions.getData();
+    }
+
+    @Override
+    public void announceTransactions(RemoteNodeInterface from, List<String> ids) throws RemoteException {
+        gossip.onAnnounce(from, ids);
+    }
+
+    @Override
+    public List<String> getTransactionIds() throws RemoteException {
+        return transactions.getIds();
+    }
+
+    @Override
+    public List<String> getTransactionData(List<String> ids) throws RemoteException {
+        return transactions.getData(ids);
     }
 
     // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
@@ -359,12 +329,18 @@ public class RemoteNodeObject extends UnicastRemoteObject implements RemoteNodeI
     // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
 
     @Override
-    public int mine(String message, int dificulty) throws RemoteException {
-        if (miner.isMining()) {
-            return 0; // Já estou ocupado
-        }
-        miner.isWorking.set(true);
-        return miner.mine(message, dificulty);
+    public long submitJob(String message, int dificulty, int version, long start, long count) throws RemoteException {
+        return miner.submit(message, dificulty, version, start, count).getId();
+    }
+
+    @Override
+    public MiningStatus pollJob(long jobId) throws RemoteException {
+        return miner.poll(jobId);
+    }
+
+    @Override
+    public boolean cancelJob(long jobId) throws RemoteException {
+        return miner.cancel(jobId);
     }
 
     @Override
@@ -392,7 +368,12 @@ public class RemoteNodeObject extends UnicastRemoteObject implements RemoteNodeI
 
     @Override
     public String getHash() throws RemoteException {
-        return MinerDistibuted.getHash(miner.message + miner.getNonce());
+        return miner.getHash();
+    }
+
+    @Override
+    public MiningStats getMiningStats() throws RemoteException {
+        return miner.getStats(getAdress());
     }
 
     // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
@@ -402,6 +383,9 @@ public class RemoteNodeObject extends UnicastRemoteObject implements RemoteNodeI
     /**
      * Recebe um bloco minerado da rede, valida-o e adiciona-o.
      * É aqui que acontece a "magia" do consenso.
+     * <p>
+     * A chamada RMI só entrega o bloco ao {@link BlockPipeline}: a validação,
+     * a escrita em disco e as carteiras são feitas noutras threads.
      */
     @Override
     public void propagateBlock(byte[] blockData) throws RemoteException {
@@ -409,76 +393,100 @@ public class RemoteNodeObject extends UnicastRemoteObject implements RemoteNodeI
         if (miner.isMining()) {
             miner.stopMining(-1);
         }
+        // 2. Validação e escrita fora da thread RMI
+        pipeline.submit(blockData);
+    }
 
-        boolean shouldPropagate = false;
-
+    /**
+     * Escrita de um bloco já validado (PoW, Merkle Root e assinaturas) na
+     * cadeia local. Corre na thread de escrita do {@link BlockPipeline}.
+     * <p>
+     * Blocos concorrentes ficam num ramo lateral; a cadeia principal é a de
+     * maior trabalho acumulado ({@link core.BlockChain#processBlock}).
+     *
+     * @return O que mudou na cadeia (os órfãos ficam no pipeline).
+     */
+    private core.ChainUpdate commitBlock(core.Block newBlock) throws Exception {
         // :::::::: FASE 1: ATUALIZAÇÃO LOCAL (Atomicidade) ::::::::
-        synchronized (activeSearches) { // Usa um objeto lock para evitar race conditions
+        synchronized (activeSearches) { // O mesmo lock da sincronização da cadeia
+            core.BlockChain bc;
             try {
-                core.Block newBlock = (core.Block) utils.Serializer.byteArrayToObject(blockData);
-                core.BlockChain bc = core.BlockChain.load(core.BlockChain.FILE_PATH + "blockchain.bch");
-
-                boolean isNewBlock = true;
-
-                // Validação Lógica
-                if (bc != null) {
-                    if (bc.getLastBlock().getID() == newBlock.getID()) {
-                        isNewBlock = false; // Já tenho este bloco
-                    } else if (bc.getLastBlock().getID() > newBlock.getID()) {
-                        return; // Bloco antigo, ignorar
-                    } else if (!java.util.Arrays.equals(bc.getLastBlock().getCurrentHash(), newBlock.getPreviousHash())) {
-                        System.out.println("Bloco órfão/inválido recebido (Hash mismatch). Ignorado.");
-                        return;
-                    }
-                } else if (newBlock.getID() == 0) {
-                     bc = new core.BlockChain(newBlock); // Genesis
-                }
+                bc = core.BlockChain.load(core.BlockChain.FILE_PATH + "blockchain.bch");
+            } catch (java.io.FileNotFoundException e) {
+                bc = null; // Ainda sem cadeia
+            }
+            if (bc != null) {
+                // Encadeamento, sequência, dificuldade, forks e persistência
+                return bc.processBlock(newBlock);
+            } else if (newBlock.getID() == 0) {
+                new core.BlockChain(newBlock); // Genesis
+                return core.ChainUpdate.of(core.ChainUpdate.Status.EXTENDED, newBlock);
+            }
+            return core.ChainUpdate.of(core.ChainUpdate.Status.ORPHAN, newBlock); // Ainda sem Genesis
+        }
+    }
 
-                // Adicionar à Blockchain
-                if (isNewBlock && bc != null) {
-                    bc.add(newBlock); // O método add() verifica PoW internamente
-                    shouldPropagate = true; // Definir flag para propagar
-                }
+    /**
+     * Pós-processamento de um bloco aceite: propagação, carteiras, mempool e
+     * GUI. Corre na thread de pós-processamento do {@link BlockPipeline}.
+     * <p>
+     * Numa reorganização só os blocos que saíram da cadeia são desfeitos nas
+     * carteiras e as suas transações voltam à mempool.
+     */
+    private void afterBlock(core.ChainUpdate update, byte[] blockData) throws Exception {
+        // :::::::: FASE 2: PROPAGAÇÃO REMOTA ::::::::
+        // Os vizinhos só colocam o bloco no pipeline deles, a chamada é rápida.
+        // Os blocos de ramos laterais também seguem: o ramo pode vir a ganhar.
+        for (RemoteNodeInterface node : network) {
+            try {
+                node.propagateBlock(blockData);
+            } catch (Exception ignore) {
+                // Nó offline, continuar
+            }
+        }
 
-                // Atualizar Carteiras (Para aparecer nas "Minhas Receitas")
-                try {
-                    SaudeCerteira.SaudeWallet.updateWallets(newBlock);
-                } catch (Exception e) {
-                    System.out.println("Aviso: Erro ao atualizar carteiras: " + e.getMessage());
-                }
+        applyUpdate(update);
 
-                // Limpar da Mempool as transações que foram incluídas no bloco
-                List<SaudeCerteira.SaudeTransaction> mined = (List<SaudeCerteira.SaudeTransaction>) newBlock.getData().getElements();
-                for (SaudeCerteira.SaudeTransaction t : mined) {
-                    byte[] tBytes = utils.Serializer.objectToByteArray(t);
-                    String tString = java.util.Base64.getEncoder().encodeToString(tBytes);
-                    this.transactions.remove(tString);
-                }
+        // Avisar GUI
+        if (listener != null && !update.getConnected().isEmpty()) {
+            listener.onTransaction("BlockReceived");
+        }
+    }
 
-                // Avisar GUI
-                if (listener != null) {
-                    listener.onTransaction("BlockReceived");
+    /**
+     * Carteiras e mempool depois de a cadeia principal mudar (blocos recebidos
+     * da rede ou da sincronização, {@link ChainSync}).
+     * <p>
+     * Os blocos que saíram da cadeia são desfeitos nas carteiras e as suas
+     * transações voltam à mempool; os que entraram atualizam as carteiras e
+     * saem da mempool.
+     */
+    void applyUpdate(core.ChainUpdate update) {
+        // Blocos que saíram da cadeia (reorganização): desfazer, do topo para baixo
+        for (core.Block old : update.getDisconnected()) {
+            try {
+                SaudeCerteira.SaudeWallet.revertWallets(old);
+            } catch (Exception e) {
+                System.out.println("Aviso: Erro ao reverter carteiras: " + e.getMessage());
+            }
+            // As transações voltam a estar pendentes (as do novo ramo saem a seguir)
+            for (Object t : old.getData().getElements()) {
+                if (t instanceof SaudeCerteira.SaudeTransaction) {
+                    this.transactions.add((SaudeCerteira.SaudeTransaction) t);
                 }
+            }
+        }
 
+        for (core.Block newBlock : update.getConnected()) {
+            // Atualizar Carteiras (Para aparecer nas "Minhas Receitas")
+            try {
+                SaudeCerteira.SaudeWallet.updateWallets(newBlock);
             } catch (Exception e) {
-                System.out.println("Nota no processamento do bloco: " + e.getMessage());
-                return; // Se o bloco for inválido, o processo morre aqui
+                System.out.println("Aviso: Erro ao atualizar carteiras: " + e.getMessage());
             }
-        } 
 
-        
-        // :::::::: FASE 2: PROPAGAÇÃO REMOTA (Assíncrona) ::::::::
-        // Enviamos o bloco para os vizinhos numa thread separada para não bloquear o RMI
-        if (shouldPropagate) {
-            new Thread(() -> {
-                for (RemoteNodeInterface node : network) {
-                    try {
-                        node.propagateBlock(blockData);
-                    } catch (Exception ignore) {
-                        // Nó offline, continuar
-                    }
-                }
-            }).start();
+            // Limpar da Mempool as transações que foram incluídas no bloco (pelo hash)
+            this.transactions.removeMined(newBlock);
         }
     }
     
@@ -504,6 +512,47 @@ public class RemoteNodeObject extends UnicastRemoteObject implements RemoteNodeI
         }
     }
 
+    /**
+     * Limite de bytes de uma resposta de {@link #getBlocks(int, int)}.
+     */
+    static final int MAX_BLOCKS_BYTES = 4 * 1024 * 1024;
+
+    @Override
+    public core.ChainTip getChainTip() throws RemoteException {
+        core.BlockChain bc = getBlockchain();
+        return bc == null ? null : bc.getTip();
+    }
+
+    @Override
+    public int findCommonAncestor(List<core.BlockHeader> locator) throws RemoteException {
+        core.BlockChain bc = getBlockchain();
+        return bc == null ? -1 : bc.findCommonAncestor(locator);
+    }
+
+    @Override
+    public List<core.BlockHeader> getHeaders(int from, int count) throws RemoteException {
+        core.BlockChain bc = getBlockchain();
+        return bc == null ? new ArrayList<>() : bc.getHeaders(from, count);
+    }
+
+    @Override
+    public List<byte[]> getBlocks(int from, int count) throws RemoteException {
+        List<byte[]> list = new ArrayList<>();
+        core.BlockChain bc = getBlockchain();
+        if (bc == null) {
+            return list;
+        }
+        int bytes = 0;
+        // pelo menos um bloco, mesmo que ultrapasse o limite
+        for (int id = Math.max(from, 0); id < bc.getSize() && list.size() < count
+                && (list.isEmpty() || bytes < MAX_BLOCKS_BYTES); id++) {
+            byte[] data = bc.getBlockData(id);
+            list.add(data);
+            bytes += data.length;
+        }
+        return list;
+    }
+
     @Override
     public core.BlockChain getBlockchain() throws RemoteException {
         try {
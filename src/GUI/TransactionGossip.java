@@ -0,0 +1,290 @@
+package GUI;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Propagação de transações por anúncio (inventário) e pedido.
+ * <p>
+ * Antes cada nó enviava a transação completa a todos os vizinhos, que a
+ * reenviavam aos seus: cada transação chegava a cada nó tantas vezes quantos
+ * os vizinhos, sempre com os dados completos e numa chamada RMI por vizinho.
+ * Agora:
+ * <ol>
+ * <li><b>Anúncio:</b> uma transação nova só é anunciada pelo hash
+ * ({@link Mempool#add(String)}). Os hashes ficam numa fila por vizinho e
+ * seguem juntos de {@link #FLUSH_MS} em {@link #FLUSH_MS} ms (ou logo que a
+ * fila chega a {@link #MAX_BATCH}): uma chamada
+ * {@link RemoteNodeInterface#announceTransactions} por vizinho para muitas
+ * transações. O vizinho que anunciou a transação não a recebe de volta.</li>
+ * <li><b>Pedido:</b> quem recebe o anúncio pede ao anunciante, numa só chamada
+ * ({@link RemoteNodeInterface#getTransactionData}), as transações que não tem
+ * na mempool nem já pediu a outro vizinho. Cada transação atravessa cada
+ * ligação no máximo uma vez.</li>
+ * </ol>
+ * Os anúncios recebidos são tratados fora das threads RMI; com a fila cheia
+ * são ignorados (os hashes voltam a chegar por outro vizinho ou na
+ * sincronização de uma nova ligação, {@link #requestAll}).
+ * Created on 19/10/2026, 01:12:40
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public class TransactionGossip {
+
+    /**
+     * Intervalo entre envios dos anúncios.
+     */
+    public static final long FLUSH_MS = 200;
+
+    /**
+     * Máximo de hashes num anúncio ou pedido.
+     */
+    public static final int MAX_BATCH = 1000;
+
+    /**
+     * Tempo até uma transação pedida (e não recebida) poder ser pedida a
+     * outro vizinho.
+     */
+    public static final long REQUEST_TIMEOUT_MS = 30_000;
+
+    /**
+     * Máximo de anúncios recebidos à espera de serem tratados.
+     */
+    public static final int MAX_PENDING = 1024;
+
+    /**
+     * Threads que pedem transações aos vizinhos.
+     */
+    public static final int FETCH_THREADS = 4;
+
+    private final RemoteNodeInterface self;
+    private final Set<RemoteNodeInterface> network;
+    private final Mempool mempool;
+    private final Consumer<String> onAdded;
+
+    // hashes por anunciar, por vizinho
+    private final Map<RemoteNodeInterface, LinkedHashSet<String>> outbox = new HashMap<>();
+    // hashes pedidos e ainda não recebidos (instante do pedido)
+    private final Map<String, Long> requested = new HashMap<>();
+
+    private final ScheduledExecutorService flusher;
+    private final ExecutorService fetchPool;
+
+    private final AtomicLong announceCalls = new AtomicLong();
+    private final AtomicLong announcedIds = new AtomicLong();
+    private final AtomicLong fetchCalls = new AtomicLong();
+    private final AtomicLong fetchedTransactions = new AtomicLong();
+
+    /**
+     * @param self Este nó (enviado nos anúncios, para os vizinhos pedirem).
+     * @param network Os vizinhos.
+     * @param mempool A mempool deste nó.
+     * @param onAdded Chamado com cada transação nova recebida de um vizinho
+     * (Base64).
+     */
+    public TransactionGossip(RemoteNodeInterface self, Set<RemoteNodeInterface> network,
+            Mempool mempool, Consumer<String> onAdded) {
+        this.self = self;
+        this.network = network;
+        this.mempool = mempool;
+        this.onAdded = onAdded;
+        this.flusher = new ScheduledThreadPoolExecutor(1, daemon("tx-announce"));
+        this.flusher.scheduleWithFixedDelay(this::flush, FLUSH_MS, FLUSH_MS, TimeUnit.MILLISECONDS);
+        // fila cheia: o anúncio é ignorado
+        this.fetchPool = new ThreadPoolExecutor(FETCH_THREADS, FETCH_THREADS, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING), daemon("tx-fetch"),
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: ANÚNCIOS (SAÍDA)
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    /**
+     * Anuncia uma transação nova a todos os vizinhos no próximo envio.
+     *
+     * @param id Hash da transação (Base64).
+     * @param from Vizinho que a enviou (não recebe o anúncio), ou null se é
+     * local.
+     */
+    public void announce(String id, RemoteNodeInterface from) {
+        boolean full = false;
+        synchronized (outbox) {
+            for (RemoteNodeInterface node : network) {
+                if (node.equals(from)) {
+                    continue;
+                }
+                LinkedHashSet<String> queue = outbox.computeIfAbsent(node, k -> new LinkedHashSet<>());
+                queue.add(id);
+                full |= queue.size() >= MAX_BATCH;
+            }
+        }
+        if (full) {
+            try {
+                flusher.execute(this::flush);
+            } catch (RejectedExecutionException ignore) {
+            }
+        }
+    }
+
+    /**
+     * Envia os anúncios pendentes: uma chamada por vizinho e por
+     * {@link #MAX_BATCH} hashes.
+     */
+    void flush() {
+        Map<RemoteNodeInterface, LinkedHashSet<String>> batch;
+        synchronized (outbox) {
+            if (outbox.isEmpty()) {
+                return;
+            }
+            batch = new HashMap<>(outbox);
+            outbox.clear();
+        }
+        for (Map.Entry<RemoteNodeInterface, LinkedHashSet<String>> e : batch.entrySet()) {
+            List<String> ids = new ArrayList<>(e.getValue());
+            for (int i = 0; i < ids.size(); i += MAX_BATCH) {
+                List<String> part = new ArrayList<>(ids.subList(i, Math.min(ids.size(), i + MAX_BATCH)));
+                try {
+                    e.getKey().announceTransactions(self, part);
+                    announceCalls.incrementAndGet();
+                    announcedIds.addAndGet(part.size());
+                } catch (Exception ignore) {
+                    // Nó offline: perde os anúncios
+                    break;
+                }
+            }
+        }
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: PEDIDOS (ENTRADA)
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    /**
+     * Recebe um anúncio de um vizinho. Não bloqueia: o pedido das
+     * transações em falta corre fora da chamada RMI.
+     *
+     * @param from O vizinho que anunciou.
+     * @param ids Hashes das transações (Base64).
+     */
+    public void onAnnounce(RemoteNodeInterface from, List<String> ids) {
+        try {
+            fetchPool.execute(() -> fetch(from, ids));
+        } catch (RejectedExecutionException ignore) {
+        }
+    }
+
+    /**
+     * Pede a um vizinho (novo) todas as transações pendentes dele que este nó
+     * não tem. Não bloqueia.
+     *
+     * @param node O vizinho.
+     */
+    public void requestAll(RemoteNodeInterface node) {
+        try {
+            fetchPool.execute(() -> {
+                try {
+                    List<String> ids = node.getTransactionIds();
+                    for (int i = 0; i < ids.size(); i += MAX_BATCH) {
+                        fetch(node, ids.subList(i, Math.min(ids.size(), i + MAX_BATCH)));
+                    }
+                } catch (Exception e) {
+                    System.out.println("Aviso: Erro ao sincronizar transações: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException ignore) {
+        }
+    }
+
+    /**
+     * Pede ao vizinho as transações anunciadas que faltam e junta-as à
+     * mempool; as novas são anunciadas aos restantes vizinhos.
+     */
+    private void fetch(RemoteNodeInterface from, List<String> ids) {
+        List<String> missing = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (requested) {
+            requested.values().removeIf(t -> now - t > REQUEST_TIMEOUT_MS);
+            for (String id : ids) {
+                if (!mempool.contains(id) && !requested.containsKey(id)) {
+                    requested.put(id, now);
+                    missing.add(id);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        try {
+            List<String> data = from.getTransactionData(missing);
+            fetchCalls.incrementAndGet();
+            for (String tx : data) {
+                // a mempool valida e calcula o hash: um vizinho não consegue
+                // trocar a transação anunciada por outra
+                String id = mempool.add(tx);
+                if (id != null) {
+                    fetchedTransactions.incrementAndGet();
+                    announce(id, from);
+                    onAdded.accept(tx);
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("Aviso: Erro ao pedir transações: " + e.getMessage());
+        } finally {
+            synchronized (requested) {
+                for (String id : missing) {
+                    requested.remove(id);
+                }
+            }
+        }
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: ESTADO
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    /**
+     * @return Hashes à espera do próximo envio (somando todos os vizinhos).
+     */
+    public int getPendingAnnouncements() {
+        synchronized (outbox) {
+            int count = 0;
+            for (LinkedHashSet<String> queue : outbox.values()) {
+                count += queue.size();
+            }
+            return count;
+        }
+    }
+
+    /**
+     * @return Contadores: anúncios enviados (chamadas e hashes) e pedidos
+     * (chamadas e transações novas recebidas).
+     */
+    @Override
+    public String toString() {
+        return "TransactionGossip[announce calls " + announceCalls + ", announced ids " + announcedIds
+                + ", fetch calls " + fetchCalls + ", fetched " + fetchedTransactions
+                + ", pending " + getPendingAnnouncements() + "]";
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -1,6 +1,11 @@
 package SaudeCerteira;
 
+import core.LeafEncoder;
+import core.MerkleTree;
+import core.StandardLeafEncoder;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.security.PrivateKey;
 import java.security.PublicKey;
@@ -27,7 +32,7 @@ import utils.Utils;
  * @author aluno_25979, aluno_25946
  * @version 2.0 (Dual Envelope Implementation)
  */
-public class SaudeTransaction implements Serializable {
+public class SaudeTransaction implements Serializable, LeafEncoder.Canonical {
 
     // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
     // :: CABEÇALHO PÚBLICO (METADADOS)
@@ -137,6 +142,34 @@ public class SaudeTransaction implements Serializable {
      * @throws Exception Se ocorrer erro no algoritmo de assinatura.
      */
     public void sign(PrivateKey privKey) throws Exception {
+        // Gerar assinatura criptográfica
+        this.signature = SecurityUtils.sign(signedData(), privKey);
+    }
+
+    /**
+     * Verifica a assinatura com a chave pública do remetente.
+     * <p>
+     * Não depende de estado (cadeia, carteiras), por isso pode ser feita em
+     * paralelo antes de o bloco entrar na cadeia ({@code GUI.BlockPipeline}).
+     *
+     * @return true se a assinatura cobre os dados atuais da transação.
+     */
+    public boolean isSignatureValid() {
+        if (signature == null || sender == null || receiver == null
+                || dadosEncriptados == null || chaveAesReceiver == null || chaveAesSender == null) {
+            return false;
+        }
+        try {
+            return SecurityUtils.verifySign(signedData(), signature, sender);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return Os dados cobertos pela assinatura.
+     */
+    private byte[] signedData() {
         // Concatenar todos os campos críticos num único array de bytes
         byte[] allData = Utils.concatenate(this.sender.getEncoded(), this.receiver.getEncoded());
         allData = Utils.concatenate(allData, Utils.longToBytes(timestamp));
@@ -145,9 +178,7 @@ public class SaudeTransaction implements Serializable {
         // Incluir ambos os envelopes na assinatura para evitar manipulação
         allData = Utils.concatenate(allData, chaveAesReceiver);
         allData = Utils.concatenate(allData, chaveAesSender);
-
-        // Gerar assinatura criptográfica
-        this.signature = SecurityUtils.sign(allData, privKey);
+        return allData;
     }
 
     /**
@@ -236,6 +267,71 @@ public class SaudeTransaction implements Serializable {
         return 0;
     }
 
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: CODIFICAÇÃO CANÓNICA (FOLHA DA MERKLE TREE)
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+    /**
+     * Versão do formato de {@link #toCanonicalBytes()}.
+     */
+    static final byte CANONICAL_VERSION = 1;
+
+    /**
+     * Codificação canónica da transação: a folha desta transação na Merkle
+     * Tree do bloco.
+     * <p>
+     * Formato (big-endian): versão, e depois cada campo com o tamanho (int, -1
+     * se null) seguido dos bytes - remetente e destinatário (UTF-8), as duas
+     * chaves públicas, timestamp (8 bytes), dados cifrados, os dois envelopes
+     * e a assinatura. Não depende da serialização Java, por isso a raiz do
+     * bloco não muda com a JVM nem com a versão desta classe.
+     *
+     * @return Bytes da transação.
+     */
+    @Override
+    public byte[] toCanonicalBytes() {
+        byte[][] fields = {
+            txtSender == null ? null : txtSender.getBytes(StandardCharsets.UTF_8),
+            txtReceiver == null ? null : txtReceiver.getBytes(StandardCharsets.UTF_8),
+            sender == null ? null : sender.getEncoded(),
+            receiver == null ? null : receiver.getEncoded(),
+            dadosEncriptados,
+            chaveAesReceiver,
+            chaveAesSender,
+            signature
+        };
+        int size = 1 + Long.BYTES + fields.length * Integer.BYTES;
+        for (byte[] f : fields) {
+            size += f == null ? 0 : f.length;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.put(CANONICAL_VERSION);
+        for (int i = 0; i < fields.length; i++) {
+            if (i == 4) {
+                buf.putLong(timestamp);
+            }
+            if (fields[i] == null) {
+                buf.putInt(-1);
+            } else {
+                buf.putInt(fields[i].length).put(fields[i]);
+            }
+        }
+        return buf.array();
+    }
+
+    /**
+     * Hash da transação: a folha desta transação na Merkle Tree dos blocos
+     * com o codificador {@link StandardLeafEncoder#CANONICAL} (hash de
+     * {@link #toCanonicalBytes()} com a etiqueta do codificador). Nos blocos
+     * antigos ({@link StandardLeafEncoder#SERIALIZED}) a folha é outra.
+     * Identifica a transação na mempool sem comparar os dados serializados.
+     *
+     * @return Hash da transação.
+     */
+    public byte[] getHash() {
+        return MerkleTree.getHashValue(StandardLeafEncoder.CANONICAL.encode(this));
+    }
+
     @Override
     public String toString() {
         return "Receita Segura (AES+RSA) De: " + txtSender + " Para: " + txtReceiver;
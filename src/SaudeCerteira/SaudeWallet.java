@@ -2,6 +2,7 @@ package SaudeCerteira;
 
 import core.Block;
 import core.BlockChain;
+import core.MerkleProof;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -10,9 +11,14 @@ import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.security.PrivateKey;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import utils.FolderUtils;
 
 /**
@@ -148,23 +154,98 @@ public class SaudeWallet implements Serializable {
         save();
     }
 
+    /**
+     * Adiciona várias transações ao histórico local e grava a carteira uma
+     * única vez.
+     * <p>
+     * Os duplicados são detetados pela assinatura, com um conjunto em vez de
+     * percorrer o histórico por cada transação.
+     *
+     * @param list As transações a adicionar.
+     */
+    public void addAll(List<WalletTransaction> list) throws Exception {
+        Set<String> signatures = new HashSet<>();
+        for (WalletTransaction w : this.transactions) {
+            signatures.add(signatureKey(w));
+        }
+        boolean changed = false;
+        for (WalletTransaction w : list) {
+            if (signatures.add(signatureKey(w))) {
+                this.transactions.add(w);
+                changed = true;
+            }
+        }
+        if (changed) {
+            save();
+        }
+    }
+
+    private static String signatureKey(WalletTransaction w) {
+        byte[] signature = w.getTransaction().getSignature();
+        return signature == null ? "" : Base64.getEncoder().encodeToString(signature);
+    }
+
     /**
      * Atualiza as carteiras envolvidas num novo bloco minerado.
      * <p>
      * Este método percorre todas as transações do bloco e distribui-as para as
-     * carteiras do Remetente e do Destinatário.
+     * carteiras do Remetente e do Destinatário. As provas são geradas de uma
+     * vez ({@link core.MerkleTree#getMerkleProofs()}) e as transações agrupadas por
+     * carteira, por isso o custo é quase linear no tamanho do bloco.
      *
      * @param block O bloco novo recebido da rede.
      */
     public static void updateWallets(Block block) throws Exception {
         List<SaudeTransaction> transactions = (List<SaudeTransaction>) block.getData().getElements();
-        for (SaudeTransaction t : transactions) {
-            // Obter Prova de Merkle (Merkle Proof) para validação futura
-            List<byte[]> proof = block.getData().getProof(t);
-            WalletTransaction w = new WalletTransaction(t, proof, block.getID());
+        // Obter todas as Provas de Merkle (compactas) numa só passagem pela árvore
+        List<MerkleProof> proofs = block.getData().getMerkleProofs();
+
+        // Agrupar por interveniente: cada carteira é lida e gravada uma só vez
+        Map<String, List<WalletTransaction>> byUser = new LinkedHashMap<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            SaudeTransaction t = transactions.get(i);
+            WalletTransaction w = new WalletTransaction(t, block.getData().leafHash(t), proofs.get(i), block.getID());
+            byUser.computeIfAbsent(t.getTxtSender(), k -> new ArrayList<>()).add(w);
+            if (!t.getTxtReceiver().equals(t.getTxtSender())) {
+                byUser.computeIfAbsent(t.getTxtReceiver(), k -> new ArrayList<>()).add(w);
+            }
+        }
 
-            // Atualizar intervenientes
-            SaudeWallet.updateWallets(w);
+        // Atualizar intervenientes
+        for (Map.Entry<String, List<WalletTransaction>> e : byUser.entrySet()) {
+            try {
+                load(e.getKey()).addAll(e.getValue());
+            } catch (Exception ex) {
+                // Pode falhar se o utilizador não existir localmente (ex: nó remoto)
+            }
+        }
+    }
+
+    /**
+     * Desfaz {@link #updateWallets(Block)} de um bloco que saiu da cadeia
+     * principal (reorganização): só as carteiras dos intervenientes do bloco
+     * são lidas e só as transações registadas com esse bloco são removidas.
+     *
+     * @param block O bloco removido da cadeia.
+     */
+    public static void revertWallets(Block block) throws Exception {
+        List<SaudeTransaction> transactions = (List<SaudeTransaction>) block.getData().getElements();
+        Set<String> signatures = new HashSet<>();
+        Set<String> users = new LinkedHashSet<>();
+        for (SaudeTransaction t : transactions) {
+            signatures.add(t.getSignature() == null ? "" : Base64.getEncoder().encodeToString(t.getSignature()));
+            users.add(t.getTxtSender());
+            users.add(t.getTxtReceiver());
+        }
+        for (String user : users) {
+            try {
+                SaudeWallet w = load(user);
+                if (w.transactions.removeIf(x -> x.getBlockID() == block.getID() && signatures.contains(signatureKey(x)))) {
+                    w.save();
+                }
+            } catch (Exception ex) {
+                // Pode falhar se o utilizador não existir localmente (ex: nó remoto)
+            }
         }
     }
 
@@ -411,13 +492,13 @@ public class SaudeWallet implements Serializable {
         t.sign(uSystem.getPrivateKey());
         data.add(t);
 
-        Block genesis = new Block(0, new byte[32], 3, data);
+        Block genesis = new Block(0, new byte[32], 18, data); // 18 bits (antes: 3 zeros Base64)
         genesis.mine(); // Minerar genesis (Nonce)
 
         BlockChain blockchain = new BlockChain(genesis);
 
         // Atualizar wallets iniciais
-        WalletTransaction w = new WalletTransaction(t, genesis.getData().getProof(t), 0);
+        WalletTransaction w = new WalletTransaction(t, genesis.getData().leafHash(t), genesis.getData().getMerkleProof(t), 0);
         SaudeWallet.updateWallets(w);
 
         return blockchain;
@@ -1,6 +1,10 @@
 package SaudeCerteira;
 
+import core.MerkleProof;
+import core.MerkleTree;
+import core.StandardLeafEncoder;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.List;
 import utils.Utils;
 
@@ -29,14 +33,25 @@ public class WalletTransaction implements Serializable {
     private final SaudeTransaction transaction;
 
     /**
-     * * A Prova de Merkle (Merkle Proof).
+     * * A Prova de Merkle (Merkle Proof) no formato antigo.
      * <p>
      * É uma lista de hashes que permite provar matematicamente que esta
      * transação pertence à Merkle Root do bloco, sem necessidade de ter o bloco
-     * inteiro.
+     * inteiro. Só existe nas carteiras gravadas antes de {@link #merkleProof}.
      */
     private final List<byte[]> proof;
 
+    /**
+     * A Prova de Merkle compacta (irmãos e direções, sem a raiz).
+     */
+    private final MerkleProof merkleProof;
+
+    /**
+     * A folha da transação na árvore do bloco (depende do codificador da
+     * árvore). Null nas carteiras gravadas antes deste campo.
+     */
+    private final byte[] leaf;
+
     /**
      * O ID do Bloco onde esta transação foi minerada.
      */
@@ -53,6 +68,25 @@ public class WalletTransaction implements Serializable {
     public WalletTransaction(SaudeTransaction transaction, List<byte[]> proof, int blockID) {
         this.transaction = transaction;
         this.proof = proof;
+        this.merkleProof = null;
+        this.leaf = null;
+        this.blockID = blockID;
+    }
+
+    /**
+     * Constrói um registo de transação confirmada com a prova compacta.
+     *
+     * @param transaction O objeto da transação original.
+     * @param leaf A folha da transação na árvore do bloco
+     * ({@link MerkleTree#leafHash}).
+     * @param proof A prova de Merkle da transação no bloco.
+     * @param blockID O número do bloco onde a transação ficou registada.
+     */
+    public WalletTransaction(SaudeTransaction transaction, byte[] leaf, MerkleProof proof, int blockID) {
+        this.transaction = transaction;
+        this.proof = null;
+        this.merkleProof = proof;
+        this.leaf = leaf;
         this.blockID = blockID;
     }
 
@@ -69,13 +103,60 @@ public class WalletTransaction implements Serializable {
     }
 
     /**
-     * Obtém a Prova de Merkle. Útil para validações SPV (Simplified Payment
-     * Verification) ou auditoria.
+     * Obtém a Prova de Merkle no formato antigo (lista de hashes terminada
+     * pela raiz). Útil para validações SPV (Simplified Payment Verification) ou
+     * auditoria.
      *
      * @return Lista de arrays de bytes (hashes).
      */
     public List<byte[]> getProof() {
-        return proof;
+        if (proof != null || merkleProof == null) {
+            return proof;
+        }
+        return merkleProof.toLegacy(leaf != null ? leaf : leafHash());
+    }
+
+    /**
+     * Obtém a Prova de Merkle compacta. As provas das carteiras antigas são
+     * convertidas a partir da lista de hashes.
+     *
+     * @return A prova, ou null se a prova antiga não corresponder à transação.
+     */
+    public MerkleProof getMerkleProof() {
+        if (merkleProof != null) {
+            return merkleProof;
+        }
+        MerkleProof converted = MerkleProof.fromLegacy(leafHash(), proof);
+        if (converted == null) {
+            // blocos anteriores à codificação canónica das folhas
+            converted = MerkleProof.fromLegacy(MerkleTree.getHashValue(StandardLeafEncoder.SERIALIZED.encode(transaction)), proof);
+        }
+        return converted;
+    }
+
+    /**
+     * Verifica que a transação pertence a um bloco.
+     *
+     * @param merkleRoot A merkleRoot do bloco {@link #getBlockID()}.
+     * @return true se a prova liga a transação à raiz.
+     */
+    public boolean isProofValid(byte[] merkleRoot) {
+        if (merkleProof == null) {
+            List<byte[]> legacy = getProof();
+            return legacy != null && !legacy.isEmpty()
+                    && Arrays.equals(legacy.get(legacy.size() - 1), merkleRoot)
+                    && getMerkleProof() != null;
+        }
+        if (leaf != null) {
+            return merkleProof.verify(leaf, merkleRoot);
+        }
+        // carteiras sem a folha: o bloco pode ser anterior à codificação canónica
+        return merkleProof.verify(leafHash(), merkleRoot)
+                || merkleProof.verify(MerkleTree.getHashValue(StandardLeafEncoder.SERIALIZED.encode(transaction)), merkleRoot);
+    }
+
+    private byte[] leafHash() {
+        return MerkleTree.getHashValue(StandardLeafEncoder.CANONICAL.encode(transaction));
     }
 
     /**
@@ -98,7 +179,7 @@ public class WalletTransaction implements Serializable {
     public String toString() {
         return transaction.toString()
                 + " Block ID[ " + blockID + "]"
-                + " Proof [ " + Utils.toStringList(proof, 8) + " ]";
+                + " Proof [ " + (merkleProof != null ? merkleProof : Utils.toStringList(proof, 8)) + " ]";
     }
 
     //::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
@@ -3,14 +3,15 @@ package core;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Date;
 import java.util.List;
-import utils.SecurityUtils;
 import utils.Utils;
 
 /**
@@ -62,10 +63,18 @@ public class Block implements Serializable {
     private final long timestamp;
 
     /**
-     * Dificuldade da mineração (Número de zeros exigidos no início do hash).
+     * Dificuldade da mineração: bits a zero exigidos no início do hash
+     * ({@link ProofOfWork#VERSION_BITS}), ou caracteres '0' em Base64 nos
+     * blocos das versões anteriores.
      */
     private final int dificulty;
 
+    /**
+     * Versão do Proof of Work ({@link ProofOfWork}). Os blocos gravados antes
+     * deste campo existir são lidos com 0 ({@link ProofOfWork#VERSION_TEXT}).
+     */
+    private final int powVersion;
+
     // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
     // :: PROTOCOLO DE SEGURANÇA (MINERAÇÃO)
     // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
@@ -75,6 +84,12 @@ public class Block implements Serializable {
      */
     private int nonce;
 
+    /**
+     * Extensão do nonce ({@link ProofOfWork#VERSION_EXTRA_NONCE}). Avança
+     * quando os 2^32 valores do nonce se esgotam.
+     */
+    private int extraNonce;
+
     /**
      * O Hash final do bloco validado (Assinatura do bloco).
      */
@@ -85,7 +100,7 @@ public class Block implements Serializable {
      *
      * @param ID Índice do bloco na cadeia.
      * @param previousHash Hash do bloco anterior (vínculo).
-     * @param dificulty Nível de dificuldade para mineração.
+     * @param dificulty Nível de dificuldade para mineração (bits a zero).
      * @param data Lista de transações ou dados a incluir no bloco.
      */
     public Block(int ID, byte[] previousHash, int dificulty, List data) {
@@ -93,6 +108,7 @@ public class Block implements Serializable {
         this.previousHash = previousHash;
         this.dificulty = dificulty;
         this.timestamp = System.currentTimeMillis();
+        this.powVersion = ProofOfWork.CURRENT_VERSION;
 
         // Constrói a Merkle Tree imediatamente para garantir integridade dos dados
         this.data = new MerkleTree(data);
@@ -110,6 +126,14 @@ public class Block implements Serializable {
      * Dificuldade.
      */
     public byte[] getHeaderData() {
+        return headerData(ID, timestamp, previousHash, merkleRoot, dificulty);
+    }
+
+    /**
+     * Dados minerados de um cabeçalho (ver {@link #getHeaderData()}). Permite
+     * validar o Proof of Work só com o {@link BlockHeader}, sem o corpo.
+     */
+    static byte[] headerData(int ID, long timestamp, byte[] previousHash, byte[] merkleRoot, int dificulty) {
         byte[] bytes = Utils.toBytes(ID);
         bytes = Utils.concatenate(bytes, Utils.toBytes(timestamp));
         bytes = Utils.concatenate(bytes, Utils.toBytes(previousHash));
@@ -123,7 +147,7 @@ public class Block implements Serializable {
      * Delega a tarefa pesada para a classe {@link GUI.MinerDistibuted}, que
      * pode usar múltiplas threads para encontrar o nonce.
      *
-     * @throws Exception Se houver erro no processo de hashing.
+     * @throws Exception Se a mineração for interrompida sem solução.
      */
     public void mine() throws Exception {
         // Converter cabeçalho para Base64 para facilitar transporte/visualização
@@ -132,26 +156,48 @@ public class Block implements Serializable {
         // Instancia o mineiro distribuído (Componente visual/multi-thread)
         GUI.MinerDistibuted miner = new GUI.MinerDistibuted();
 
-        // Fica bloqueado aqui até encontrar o nonce
-        int pow = miner.mine(dataTxt, this.dificulty);
+        // Fica bloqueado aqui até encontrar o nonce (índice extraNonce:nonce)
+        long work = miner.mine(dataTxt, this.dificulty, this.powVersion);
+        if (work < 0) {
+            throw new Exception("Mining stopped before a solution was found.");
+        }
 
         // Define o nonce vencedor e calcula o hash final
-        setNonce(pow);
+        setWork(work);
     }
 
     /**
      * Define o Nonce vencedor e calcula o Hash final do bloco.
      *
      * @param nonce O número encontrado que resolve o puzzle.
-     * @throws Exception Se o algoritmo SHA-256 não estiver disponível.
+     * @throws Exception Se a versão do Proof of Work for desconhecida.
      */
     public void setNonce(int nonce) throws Exception {
+        setNonce(extraNonce, nonce);
+    }
+
+    /**
+     * Define o par (extraNonce, nonce) vencedor e calcula o Hash final.
+     *
+     * @param extraNonce A extensão do nonce.
+     * @param nonce O nonce.
+     * @throws Exception Se a versão do Proof of Work for desconhecida.
+     */
+    public void setNonce(int extraNonce, int nonce) throws Exception {
+        this.extraNonce = extraNonce;
         this.nonce = nonce;
-        String hash = Base64.getEncoder().encodeToString(getHeaderData());
+        // Calcula o hash final: SHA-256( Header + [extraNonce] + Nonce )
+        this.currentHash = ProofOfWork.hash(powVersion, getHeaderData(), extraNonce, nonce);
+    }
 
-        // Calcula o hash final: SHA-256( Header + Nonce )
-        this.currentHash = SecurityUtils.calculateHash(
-                (hash + nonce).getBytes(), "SHA-256");
+    /**
+     * Define a solução a partir de um índice de trabalho do mineiro.
+     *
+     * @param work Índice de trabalho ({@link ProofOfWork#work(int, int)}).
+     * @throws Exception Se a versão do Proof of Work for desconhecida.
+     */
+    public void setWork(long work) throws Exception {
+        setNonce(ProofOfWork.extraNonce(work), ProofOfWork.nonce(work));
     }
 
     /**
@@ -166,6 +212,8 @@ public class Block implements Serializable {
         txt.append("\nmerkleRoot ").append(Base64.getEncoder().encodeToString(merkleRoot));
         txt.append("\ndificulty ").append(dificulty);
         txt.append("\nnonce ").append(nonce);
+        txt.append("\nextraNonce ").append(extraNonce);
+        txt.append("\npow ").append(powVersion);
         return txt.toString();
     }
 
@@ -180,13 +228,25 @@ public class Block implements Serializable {
         return txt.toString();
     }
 
+    /**
+     * Verifica que as transações do bloco produzem a merkleRoot do cabeçalho.
+     * <p>
+     * Os blocos lidos do disco ou da rede trazem só as transações e a raiz; os
+     * níveis da árvore são reconstruídos aqui (uma única vez) e comparados.
+     *
+     * @return true se os dados correspondem à merkleRoot.
+     */
+    public boolean isMerkleRootValid() {
+        return data != null && data.isRootValid(merkleRoot);
+    }
+
     /**
      * Valida a integridade do bloco (Proof of Work).
      * <p>
      * Verifica dois critérios:
      * <ol>
      * <li><b>Dificuldade:</b> O hash atual começa com o número correto de
-     * zeros?</li>
+     * zeros (bits, ou caracteres Base64 nos blocos antigos)?</li>
      * <li><b>Integridade:</b> O hash calculado (Header + Nonce) bate certo com
      * o hash armazenado?</li>
      * </ol>
@@ -195,18 +255,13 @@ public class Block implements Serializable {
      */
     public boolean isValid() {
         try {
-            // 1. Verificar Dificuldade (Zeros no início do Hash em Base64)
-            String txtHash = Base64.getEncoder().encodeToString(currentHash);
-            String hashZeros = txtHash.substring(0, this.dificulty);
-            String allZeros = String.format("%0" + dificulty + "d", 0);
-
-            if (!hashZeros.equals(allZeros)) {
+            // 1. Verificar Dificuldade (comparação direta nos bytes do hash)
+            if (!ProofOfWork.checkDificulty(powVersion, currentHash, dificulty)) {
                 return false; // Falhou no teste de dificuldade
             }
 
             // 2. Verificar Integridade Matemática (Recalcular hash)
-            String headerTxt = Base64.getEncoder().encodeToString(getHeaderData()) + nonce;
-            byte[] myHash = SecurityUtils.calculateHash(headerTxt.getBytes(), "SHA-256");
+            byte[] myHash = ProofOfWork.hash(powVersion, getHeaderData(), extraNonce, nonce);
 
             return Arrays.equals(myHash, currentHash);
 
@@ -247,6 +302,18 @@ public class Block implements Serializable {
         }
     }
 
+    /**
+     * A árvore é gravada só com as transações e a raiz: rejeita logo um bloco
+     * cuja raiz gravada não é a do cabeçalho (as transações são verificadas
+     * quando os níveis forem reconstruídos).
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (data != null && !data.matchesSavedRoot(merkleRoot)) {
+            throw new InvalidObjectException("Merkle Error: data of block " + ID + " does not match the merkle root");
+        }
+    }
+
     // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
     // :: GETTERS
     // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
@@ -278,6 +345,21 @@ public class Block implements Serializable {
         return nonce;
     }
 
+    public int getExtraNonce() {
+        return extraNonce;
+    }
+
+    public int getPowVersion() {
+        return powVersion;
+    }
+
+    /**
+     * @return O trabalho do bloco ({@link ProofOfWork#blockWork}).
+     */
+    public BigInteger getWork() {
+        return ProofOfWork.blockWork(powVersion, dificulty);
+    }
+
     public byte[] getCurrentHash() {
         return currentHash;
     }
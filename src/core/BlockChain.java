@@ -21,15 +21,20 @@ package core;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.IntFunction;
 import utils.FolderUtils;
+import utils.Serializer;
 
 /**
  * Representa a Cadeia de Blocos (Blockchain) - O Livro Razão Distribuído.
@@ -41,8 +46,8 @@ import utils.FolderUtils;
  * anterior.</li>
  * <li><b>Imutabilidade:</b> Valida o Proof of Work (PoW) antes de aceitar
  * alterações.</li>
- * <li><b>Persistência:</b> Guarda automaticamente o estado da cadeia no
- * disco.</li>
+ * <li><b>Persistência:</b> Guarda automaticamente cada bloco novo no
+ * {@link BlockStore} (log append-only), sem reescrever a cadeia inteira.</li>
  * </ul>
  * Created on 08/10/2025, 15:28:52
  *
@@ -51,22 +56,47 @@ import utils.FolderUtils;
 public class BlockChain implements Serializable {
 
     /**
-     * Diretoria onde os blocos e o ficheiro mestre são guardados.
+     * Diretoria onde os segmentos de blocos e o índice são guardados.
      */
     public static final String FILE_PATH = "data_blocks/";
 
     /**
-     * A lista em memória que contém todos os blocos ordenados.
+     * Ficheiro mestre das versões antigas (cadeia inteira serializada). Só é
+     * lido uma vez, para migrar os blocos para o {@link BlockStore}.
+     */
+    public static final String LEGACY_FILE = "blockchain.bch";
+
+    /**
+     * Blocos em memória. Só é usado em cópias desligadas do disco (cadeias
+     * recebidas por RMI e ficheiros {@code .bch} antigos); uma cadeia
+     * carregada do disco lê os blocos do {@link BlockStore} a pedido.
      */
     List<Block> blocks;
 
+    /**
+     * Armazenamento append-only onde os blocos são persistidos.
+     */
+    transient BlockStore store;
+
     /**
      * Construtor privado. Inicializa a estrutura de pastas necessária para a
-     * persistência.
+     * persistência e abre o armazenamento de blocos.
+     *
+     * @param path Diretoria dos blocos.
      */
-    private BlockChain() {
+    private BlockChain(String path) throws IOException {
         // Garante que a diretoria existe antes de tentar gravar
-        new File(FILE_PATH).mkdirs();
+        new File(path).mkdirs();
+        this.store = BlockStore.open(path);
+    }
+
+    /**
+     * Cópia em memória (só de leitura) de uma cadeia.
+     *
+     * @param blocks Os blocos da cadeia.
+     */
+    private BlockChain(List<Block> blocks) {
+        this.blocks = blocks;
     }
 
     /**
@@ -79,14 +109,13 @@ public class BlockChain implements Serializable {
      * @throws Exception Se houver erro de gravação.
      */
     public BlockChain(Block genesis) throws Exception {
-        this();
-        blocks = new ArrayList<>();
-        // Adicionar bloco à lista em memória
-        blocks.add(genesis);
-        // Persistir o bloco individualmente (.blk)
-        genesis.save(FILE_PATH);
-        // Persistir o estado da cadeia (.bch)
-        save(FILE_PATH + "blockchain.bch");
+        this(FILE_PATH);
+        // Uma cadeia nova substitui qualquer cadeia anterior na diretoria
+        store.truncate(0);
+        store.getTransactionIndex().truncate(0);
+        // Persistir o bloco no log
+        store.append(genesis);
+        store.getTransactionIndex().add(genesis);
     }
 
     // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
@@ -111,14 +140,14 @@ public class BlockChain implements Serializable {
      * @param data Lista de transações a incluir no bloco.
      */
     public void add(List data) throws Exception {
-        // 1. Obter referência do topo da cadeia
-        Block lastBlock = blocks.get(blocks.size() - 1);
+        // 1. Obter referência do topo da cadeia (só o cabeçalho é necessário)
+        BlockHeader lastBlock = getLastHeader();
 
         // 2. Construir o bloco candidato
         Block newBlock = new Block(
                 lastBlock.getID() + 1, // ID sequencial
                 lastBlock.getCurrentHash(), // Elo criptográfico (Link)
-                lastBlock.getDificulty(), // Mantém a dificuldade atual
+                getNextDificulty(), // Dificuldade ajustada pela rede (em bits)
                 data);                          // Dados (Payload)
 
         // 3. Minerar (Encontrar o Nonce)
@@ -140,8 +169,27 @@ public class BlockChain implements Serializable {
      * sequência.
      */
     public void add(Block newBlock) throws Exception {
-        Block last = getLastBlock();
+        validate(newBlock, getLastHeader(), this::getHeader);
 
+        // ::::::: SUCESSO ::::::::
+        // Se passou em todas as validações, aceitamos o bloco.
+        // Persistência: O(tamanho do bloco), apenas o registo novo é escrito
+        store.append(newBlock);
+        // Índice de transações (anti-replay) atualizado incrementalmente
+        store.getTransactionIndex().add(newBlock);
+    }
+
+    /**
+     * Regras de consenso de um bloco sobre o seu pai (na cadeia principal ou
+     * num ramo lateral).
+     *
+     * @param newBlock O bloco candidato.
+     * @param last Cabeçalho do bloco anterior.
+     * @param headers Cabeçalhos do ramo do bloco, por altura (para a
+     * dificuldade e o timestamp).
+     * @throws Exception Se o bloco for inválido.
+     */
+    private static void validate(Block newBlock, BlockHeader last, IntFunction<BlockHeader> headers) throws Exception {
         // VALIDAÇÃO 1: Encadeamento (Chain Link)
         // O hash anterior do novo bloco DEVE ser igual ao hash atual do último bloco.
         if (!Arrays.equals(last.getCurrentHash(), newBlock.getPreviousHash())) {
@@ -154,19 +202,55 @@ public class BlockChain implements Serializable {
             throw new Exception("Security Alert: Invalid Block (PoW failed or Data corrupted).");
         }
 
+        // VALIDAÇÃO 2b: Dados (Merkle Root)
+        // As transações têm de produzir a merkleRoot que o Proof of Work protege.
+        if (!newBlock.isMerkleRootValid()) {
+            throw new Exception("Security Alert: Invalid Block (Merkle root does not match the data).");
+        }
+
         // VALIDAÇÃO 3: Sequência (Chronology)
         // O ID do novo bloco deve ser exatamente o próximo número da sequência.
-        if (blocks.size() != newBlock.getID()) {
+        if (last.getID() + 1 != newBlock.getID()) {
             throw new Exception("Sync Error: Incorrect Block ID sequence.");
         }
 
-        // ::::::: SUCESSO ::::::::
-        // Se passou em todas as validações, aceitamos o bloco.
-        blocks.add(newBlock);
+        // VALIDAÇÃO 4: Dificuldade e Timestamp (Consenso)
+        validateHeader(new BlockHeader(newBlock), last, headers);
+    }
 
-        // Persistência
-        newBlock.save(FILE_PATH); // Guarda o ficheiro 00X.blk
-        save(FILE_PATH + "blockchain.bch"); // Atualiza o ficheiro mestre da cadeia
+    /**
+     * Regras de consenso que só dependem do cabeçalho: versão do Proof of
+     * Work, dificuldade e timestamp. Também usadas na sincronização, para
+     * rejeitar um ramo antes de descarregar os blocos.
+     *
+     * @param header Cabeçalho do bloco candidato.
+     * @param last Cabeçalho do bloco anterior.
+     * @param headers Cabeçalhos do ramo do bloco, por altura.
+     * @throws Exception Se o cabeçalho não cumprir as regras.
+     */
+    public static void validateHeader(BlockHeader header, BlockHeader last, IntFunction<BlockHeader> headers) throws Exception {
+        // Prefixo migrado da cadeia antiga: a versão em texto só é aceite
+        // enquanto o bloco anterior também a usa, e esses blocos não têm
+        // reajuste nem regra de timestamp.
+        if (header.getPowVersion() == ProofOfWork.VERSION_TEXT
+                && last.getPowVersion() == ProofOfWork.VERSION_TEXT) {
+            if (header.getDificulty() <= 0) {
+                throw new Exception("Consensus Error: Wrong difficulty for block " + header.getID() + ".");
+            }
+            return;
+        }
+        // Depois do prefixo, só a versão atual: as versões intermédias nunca
+        // entram numa cadeia.
+        if (header.getPowVersion() != ProofOfWork.CURRENT_VERSION) {
+            throw new Exception("Consensus Error: Outdated Proof of Work version.");
+        }
+        // A dificuldade é a calculada pela rede (nunca 0: qualquer hash serviria).
+        if (header.getDificulty() <= 0
+                || ProofOfWork.toBits(header.getPowVersion(), header.getDificulty())
+                != DifficultyRetarget.nextBits(headers, header.getID())) {
+            throw new Exception("Consensus Error: Wrong difficulty for block " + header.getID() + ".");
+        }
+        DifficultyRetarget.checkTimestamp(headers, header.getID(), header.getTimestamp());
     }
 
     // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
@@ -176,53 +260,380 @@ public class BlockChain implements Serializable {
      * @return O bloco mais recente da cadeia (Topo).
      */
     public Block getLastBlock() {
-        return blocks.get(blocks.size() - 1);
+        return getBlockID(getSize() - 1);
     }
 
     /**
+     * Obtém um bloco completo. O corpo é desserializado a partir do segmento
+     * mapeado em memória apenas quando é pedido.
+     *
      * @return Um bloco específico pelo seu ID (Altura).
      */
     public Block getBlockID(int id) {
-        return blocks.get(id);
+        if (store == null) {
+            return blocks.get(id);
+        }
+        try {
+            return store.read(id);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
     }
 
     /**
-     * @return A lista completa de blocos.
+     * @return O cabeçalho do bloco mais recente (sem ler o corpo).
+     */
+    public BlockHeader getLastHeader() {
+        return getHeader(getSize() - 1);
+    }
+
+    /**
+     * @return O cabeçalho de um bloco pelo seu ID (O(1), sem ler o corpo).
+     */
+    public BlockHeader getHeader(int id) {
+        if (store == null) {
+            return new BlockHeader(blocks.get(id));
+        }
+        return store.getHeader(id);
+    }
+
+    /**
+     * Dificuldade (bits) exigida para o próximo bloco, calculada a partir dos
+     * timestamps dos blocos anteriores (ver {@link DifficultyRetarget}).
+     *
+     * @return Dificuldade em bits.
+     */
+    public int getNextDificulty() {
+        return DifficultyRetarget.nextBits(this::getHeader, getSize());
+    }
+
+    /**
+     * @return Número de blocos da cadeia.
+     */
+    public int getSize() {
+        return store == null ? blocks.size() : store.size();
+    }
+
+    /**
+     * @return A lista completa de blocos (vista só de leitura; cada bloco é
+     * lido do disco quando é acedido).
      */
     public List<Block> getBlocks() {
-        return blocks;
+        return new AbstractList<Block>() {
+            @Override
+            public Block get(int index) {
+                return getBlockID(index);
+            }
+
+            @Override
+            public int size() {
+                return getSize();
+            }
+        };
     }
 
     @Override
     public String toString() {
-        return "BlockChain Size: " + blocks.size();
+        return "BlockChain Size: " + getSize();
     }
 
     // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
-    // :: PERSISTÊNCIA (SERIALIZAÇÃO)
+    // :: SINCRONIZAÇÃO INCREMENTAL (HEADERS-FIRST)
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    /**
+     * Número máximo de cabeçalhos devolvidos por {@link #getHeaders}.
+     */
+    public static final int MAX_HEADERS = 2000;
+
+    /**
+     * @return Resumo do topo da cadeia (altura e último cabeçalho).
+     */
+    public ChainTip getTip() {
+        return new ChainTip(getSize(), getLastHeader(), getChainWork());
+    }
+
+    /**
+     * Localizador da cadeia: cabeçalhos do topo para trás, os 10 primeiros
+     * seguidos e depois com o intervalo a duplicar, terminando sempre no
+     * Genesis. Tem O(log n) entradas e permite a outro nó encontrar o último
+     * bloco em comum ({@link #findCommonAncestor}).
+     *
+     * @return Lista de cabeçalhos, do mais alto para o Genesis.
+     */
+    public List<BlockHeader> getLocator() {
+        List<BlockHeader> locator = new ArrayList<>();
+        int step = 1;
+        for (int id = getSize() - 1; id > 0; id -= step) {
+            locator.add(getHeader(id));
+            if (locator.size() >= 10) {
+                step *= 2;
+            }
+        }
+        if (getSize() > 0) {
+            locator.add(getHeader(0));
+        }
+        return locator;
+    }
+
+    /**
+     * Procura o último bloco em comum com outra cadeia.
+     *
+     * @param locator Localizador da outra cadeia ({@link #getLocator()}).
+     * @return ID do bloco mais alto do localizador que também está nesta
+     * cadeia, ou -1 se nem o Genesis é comum.
+     */
+    public int findCommonAncestor(List<BlockHeader> locator) {
+        for (BlockHeader h : locator) {
+            int id = h.getID();
+            if (id >= 0 && id < getSize()
+                    && Arrays.equals(getHeader(id).getCurrentHash(), h.getCurrentHash())) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param from ID do primeiro cabeçalho.
+     * @param count Número de cabeçalhos (no máximo {@link #MAX_HEADERS}).
+     * @return Os cabeçalhos existentes no intervalo (sem ler os corpos).
+     */
+    public List<BlockHeader> getHeaders(int from, int count) {
+        List<BlockHeader> headers = new ArrayList<>();
+        int to = Math.min(getSize(), from + Math.min(count, MAX_HEADERS));
+        for (int id = Math.max(from, 0); id < to; id++) {
+            headers.add(getHeader(id));
+        }
+        return headers;
+    }
+
+    /**
+     * Obtém um bloco serializado (para envio pela rede). Numa cadeia em disco
+     * os bytes são copiados do log sem desserializar o bloco.
+     *
+     * @param id ID do bloco.
+     * @return O bloco serializado.
+     */
+    public byte[] getBlockData(int id) {
+        try {
+            if (store == null) {
+                return Serializer.objectToByteArray(blocks.get(id));
+            }
+            return store.readRaw(id);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Remove os blocos a partir de uma altura (ex: a sincronização encontrou
+     * uma cadeia com mais trabalho que diverge depois do último bloco em
+     * comum). Os blocos removidos passam para os ramos laterais
+     * ({@link BlockTree}); só o fim do índice de transações é cortado.
+     *
+     * @param newSize Número de blocos a manter (pelo menos o Genesis).
+     * @return Os blocos removidos, do topo para baixo.
+     * @throws IOException Erro de escrita.
+     */
+    public List<Block> rollback(int newSize) throws IOException {
+        if (store == null) {
+            throw new IOException("Sync Error: in-memory chains cannot be rolled back.");
+        }
+        newSize = Math.max(newSize, 1);
+        List<Block> removed = new ArrayList<>();
+        BigInteger work = store.getChainWork(newSize);
+        for (int id = newSize; id < getSize(); id++) {
+            Block b = getBlockID(id);
+            work = work.add(b.getWork());
+            store.getBlockTree().put(b, work, newSize);
+            removed.add(b);
+        }
+        store.truncate(newSize);
+        store.getTransactionIndex().truncate(newSize);
+        Collections.reverse(removed);
+        return removed;
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: RAMOS CONCORRENTES (FORKS)
     // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
     /**
-     * Guarda o estado atual da Blockchain em disco.
+     * @return Trabalho acumulado da cadeia ({@link ProofOfWork#blockWork}).
+     */
+    public BigInteger getChainWork() {
+        return getChainWork(getSize());
+    }
+
+    /**
+     * @param size Número de blocos a contar desde o Genesis.
+     * @return Trabalho acumulado desses blocos.
+     */
+    public BigInteger getChainWork(int size) {
+        if (store != null) {
+            return store.getChainWork(size);
+        }
+        BigInteger work = BigInteger.ZERO;
+        for (int id = 0; id < Math.min(size, getSize()); id++) {
+            work = work.add(getHeader(id).getWork());
+        }
+        return work;
+    }
+
+    /**
+     * @return Os ramos laterais desta cadeia.
+     */
+    public BlockTree getBlockTree() {
+        return store == null ? new BlockTree() : store.getBlockTree();
+    }
+
+    /**
+     * Entrega um bloco recebido da rede, que pode não estender o topo.
+     * <p>
+     * A cadeia principal é a de maior trabalho acumulado (não a mais longa):
+     * <ol>
+     * <li>Um bloco que estende o topo é adicionado com {@link #add(Block)}.</li>
+     * <li>Um bloco cujo pai está na cadeia principal (até
+     * {@link BlockTree#MAX_REORG_DEPTH} blocos abaixo do topo) ou num ramo
+     * lateral é validado sobre esse ramo e guardado na {@link BlockTree}.</li>
+     * <li>Se o ramo passar a ter mais trabalho que a cadeia principal, a
+     * cadeia é reorganizada: só os blocos depois do ponto de divergência são
+     * removidos ({@link #rollback(int)}) e os do ramo adicionados. Se um
+     * deles falhar, a cadeia anterior é reposta.</li>
+     * </ol>
      *
-     * @param fileName Caminho do ficheiro (ex: blockchain.bch).
+     * @param newBlock O bloco (já com Proof of Work e Merkle Root
+     * verificados, ou não: são verificados outra vez).
+     * @return O que mudou na cadeia.
+     * @throws Exception Se o bloco for inválido no seu ramo.
      */
-    public void save(String fileName) throws Exception {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(fileName))) {
-            out.writeObject(this);
+    public ChainUpdate processBlock(Block newBlock) throws Exception {
+        if (store == null) {
+            throw new IOException("Sync Error: in-memory chains cannot be reorganized.");
+        }
+        BlockTree tree = store.getBlockTree();
+        int id = newBlock.getID();
+        // 1. Já conhecido
+        if ((id >= 0 && id < getSize() && Arrays.equals(getHeader(id).getCurrentHash(), newBlock.getCurrentHash()))
+                || tree.contains(newBlock.getCurrentHash())) {
+            return ChainUpdate.of(ChainUpdate.Status.KNOWN, newBlock);
+        }
+        // 2. Estende o topo (o caso normal)
+        if (Arrays.equals(getLastHeader().getCurrentHash(), newBlock.getPreviousHash())) {
+            add(newBlock);
+            return ChainUpdate.of(ChainUpdate.Status.EXTENDED, newBlock);
+        }
+        // 3. Ramo lateral: o ramo até à cadeia principal
+        BlockTree.Node parent = tree.get(newBlock.getPreviousHash());
+        List<Block> branch = parent == null ? new ArrayList<>() : tree.branch(newBlock.getPreviousHash());
+        int fork = (branch.isEmpty() ? id : branch.get(0).getID()) - 1;
+        byte[] forkHash = branch.isEmpty() ? newBlock.getPreviousHash() : branch.get(0).getPreviousHash();
+        if (fork < 0 || fork >= getSize() || !Arrays.equals(getHeader(fork).getCurrentHash(), forkHash)) {
+            return ChainUpdate.of(ChainUpdate.Status.ORPHAN, newBlock);
+        }
+        if (getSize() - 1 - fork > BlockTree.MAX_REORG_DEPTH) {
+            throw new Exception("Consensus Error: fork at block " + fork + " is too deep.");
+        }
+        IntFunction<BlockHeader> headers = h -> h <= fork ? getHeader(h) : new BlockHeader(branch.get(h - fork - 1));
+        validate(newBlock, headers.apply(id - 1), headers);
+
+        BigInteger work = (parent == null ? getChainWork(fork + 1) : parent.work).add(newBlock.getWork());
+        tree.put(newBlock, work, getSize());
+        if (work.compareTo(getChainWork()) <= 0) {
+            return ChainUpdate.of(ChainUpdate.Status.SIDE_BRANCH, newBlock);
+        }
+
+        // 4. Reorganização: o ramo tem mais trabalho
+        branch.add(newBlock);
+        List<Block> removed = rollback(fork + 1);
+        try {
+            for (Block b : branch) {
+                add(b);
+                tree.remove(b.getCurrentHash());
+            }
+        } catch (Exception ex) {
+            // Repor a cadeia anterior
+            rollback(fork + 1);
+            tree.remove(newBlock.getCurrentHash());
+            for (int i = removed.size() - 1; i >= 0; i--) {
+                add(removed.get(i));
+                tree.remove(removed.get(i).getCurrentHash());
+            }
+            throw ex;
         }
+        System.out.println("BlockChain: reorganized at block " + fork + " (-" + removed.size() + " +" + branch.size() + ")");
+        return new ChainUpdate(ChainUpdate.Status.REORGANIZED, newBlock, removed, branch);
     }
 
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: PERSISTÊNCIA (SERIALIZAÇÃO)
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
     /**
      * Carrega a Blockchain do disco.
+     * <p>
+     * Os blocos são lidos do {@link BlockStore} da diretoria do ficheiro. Se o
+     * armazenamento estiver vazio mas existir uma cadeia no formato antigo
+     * ({@code blockchain.bch} ou ficheiros {@code .blk}), os blocos são
+     * migrados para o log e os ficheiros antigos apagados.
      *
-     * @param fileName Caminho do ficheiro.
+     * @param fileName Caminho do ficheiro mestre (ex: data_blocks/blockchain.bch).
      * @return A instância da Blockchain carregada.
+     * @throws FileNotFoundException Se não existir nenhuma cadeia guardada.
      */
     public static BlockChain load(String fileName) throws Exception {
-        try (ObjectInputStream in = new ObjectInputStream(
-                new FileInputStream(fileName))) {
-            return (BlockChain) in.readObject();
+        File folder = new File(fileName).getAbsoluteFile().getParentFile();
+        BlockChain bc = new BlockChain(folder.getPath());
+        if (bc.store.size() == 0) {
+            migrateLegacy(folder, bc.store);
         }
+        if (bc.store.size() == 0) {
+            throw new FileNotFoundException("No blockchain in " + folder);
+        }
+        return bc;
+    }
+
+    /**
+     * Ao serializar (ex: envio por RMI), envia uma cópia em memória com os
+     * blocos, uma vez que o armazenamento em disco não viaja com o objeto.
+     */
+    private Object writeReplace() {
+        if (store == null) {
+            return this;
+        }
+        return new BlockChain(new ArrayList<>(getBlocks()));
+    }
+
+    /**
+     * Migra uma cadeia no formato antigo (ficheiro mestre .bch ou blocos .blk
+     * individuais) para o armazenamento append-only.
+     *
+     * @param folder Diretoria dos blocos.
+     * @param store Armazenamento de destino (vazio).
+     */
+    private static void migrateLegacy(File folder, BlockStore store) throws Exception {
+        File legacy = new File(folder, LEGACY_FILE);
+        List<Block> old = new ArrayList<>();
+        if (legacy.exists()) {
+            try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(legacy))) {
+                old.addAll(((BlockChain) in.readObject()).blocks);
+            }
+        } else {
+            Block b;
+            while ((b = Block.load(folder.getPath() + File.separator, old.size())) != null) {
+                old.add(b);
+            }
+        }
+        if (old.isEmpty()) {
+            return;
+        }
+        for (Block b : old) {
+            store.append(b);
+        }
+        // Os blocos estão no log: os ficheiros antigos deixam de ser necessários
+        legacy.delete();
+        for (int id = 0; id < old.size(); id++) {
+            new File(folder, id + ".blk").delete();
+        }
+        System.out.println("BlockChain: migrated " + old.size() + " blocks to the block store");
     }
 
     /**
@@ -230,6 +641,7 @@ public class BlockChain implements Serializable {
      * irreversível.
      */
     public static void deleteAllBlocks() throws IOException {
+        BlockStore.close(FILE_PATH);
         FolderUtils.cleanFolder(FILE_PATH, true);
     }
 
@@ -240,31 +652,31 @@ public class BlockChain implements Serializable {
      * Verifica se uma transação já existe na história da Blockchain.
      * <p>
      * Isto é fundamental para impedir "Replay Attacks" (Gastar a mesma
-     * receita/moeda duas vezes). Compara a assinatura digital única da
-     * transação com todas as existentes.
+     * receita/moeda duas vezes). A assinatura digital única da transação é
+     * procurada no {@link TransactionIndex} (O(1)), em vez de ser comparada
+     * com todas as transações de todos os blocos.
      *
      * @param signature A assinatura digital da transação a verificar.
      * @return true se a transação já foi processada anteriormente.
      */
     public boolean existsTransaction(byte[] signature) {
-        // Percorrer todos os blocos da história (Do Genesis ao atual)
-        for (Block b : blocks) {
-            // Percorrer todas as transações dentro de cada bloco
-            List<Object> transacoesDoBloco = b.getData().getElements();
-
-            for (Object o : transacoesDoBloco) {
-                // Verificar se é uma transação do nosso sistema de saúde
-                if (o instanceof SaudeCerteira.SaudeTransaction) {
-                    SaudeCerteira.SaudeTransaction t = (SaudeCerteira.SaudeTransaction) o;
-
-                    // Comparar as assinaturas byte-a-byte
-                    if (java.util.Arrays.equals(t.getSignature(), signature)) {
-                        return true; // ENCONTREI! Transação duplicada.
+        if (store == null) {
+            // Cópia em memória: procura sequencial
+            for (Block b : blocks) {
+                for (Object o : b.getData().getElements()) {
+                    if (o instanceof SaudeCerteira.SaudeTransaction t
+                            && Arrays.equals(t.getSignature(), signature)) {
+                        return true;
                     }
                 }
             }
+            return false;
+        }
+        try {
+            return store.getTransactionIndex().contains(signature);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
         }
-        return false; // Não existe, é uma transação nova e válida.
     }
 
     //::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
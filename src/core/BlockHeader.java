@@ -0,0 +1,138 @@
+package core;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Cabeçalho de um bloco (sem o corpo / Merkle Tree).
+ * <p>
+ * É a unidade guardada no índice do {@link BlockStore}: permite responder a
+ * perguntas sobre a cadeia (altura, hash do topo, encadeamento, dificuldade)
+ * sem desserializar as transações de cada bloco.
+ * Created on 18/10/2026, 11:05:12
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public class BlockHeader implements Serializable {
+
+    private final int ID;
+    private final byte[] currentHash;
+    private final byte[] previousHash;
+    private final byte[] merkleRoot;
+    private final long timestamp;
+    private final int dificulty;
+    private final int powVersion;
+    private final int nonce;
+    private final int extraNonce;
+
+    /**
+     * Constrói um cabeçalho a partir dos campos guardados no índice.
+     */
+    public BlockHeader(int ID, byte[] currentHash, byte[] previousHash, byte[] merkleRoot,
+            long timestamp, int dificulty, int powVersion, int nonce, int extraNonce) {
+        this.ID = ID;
+        this.currentHash = currentHash;
+        this.previousHash = previousHash;
+        this.merkleRoot = merkleRoot;
+        this.timestamp = timestamp;
+        this.dificulty = dificulty;
+        this.powVersion = powVersion;
+        this.nonce = nonce;
+        this.extraNonce = extraNonce;
+    }
+
+    /**
+     * Extrai o cabeçalho de um bloco completo.
+     *
+     * @param b O bloco.
+     */
+    public BlockHeader(Block b) {
+        this(b.getID(), b.getCurrentHash(), b.getPreviousHash(), b.getMerkleRoot(),
+                b.getTimestamp(), b.getDificulty(), b.getPowVersion(), b.getNonce(), b.getExtraNonce());
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: GETTERS
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    public int getID() {
+        return ID;
+    }
+
+    public byte[] getCurrentHash() {
+        return currentHash;
+    }
+
+    public byte[] getPreviousHash() {
+        return previousHash;
+    }
+
+    public byte[] getMerkleRoot() {
+        return merkleRoot;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getDificulty() {
+        return dificulty;
+    }
+
+    public int getPowVersion() {
+        return powVersion;
+    }
+
+    /**
+     * @return A dificuldade em bits, independente da versão do PoW.
+     */
+    public int getDificultyBits() {
+        return ProofOfWork.toBits(powVersion, dificulty);
+    }
+
+    /**
+     * @return O trabalho do bloco ({@link ProofOfWork#blockWork}).
+     */
+    public BigInteger getWork() {
+        return ProofOfWork.blockWork(powVersion, dificulty);
+    }
+
+    public int getNonce() {
+        return nonce;
+    }
+
+    public int getExtraNonce() {
+        return extraNonce;
+    }
+
+    /**
+     * Valida o Proof of Work do cabeçalho (dificuldade e hash), como
+     * {@link Block#isValid()}, mas sem precisar do corpo do bloco. Usado na
+     * sincronização para rejeitar uma cadeia antes de descarregar os blocos.
+     *
+     * @return true se o hash cumpre a dificuldade e corresponde aos campos.
+     */
+    public boolean isValid() {
+        try {
+            if (!ProofOfWork.checkDificulty(powVersion, currentHash, dificulty)) {
+                return false;
+            }
+            byte[] data = Block.headerData(ID, timestamp, previousHash, merkleRoot, dificulty);
+            return Arrays.equals(ProofOfWork.hash(powVersion, data, extraNonce, nonce), currentHash);
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ID " + ID
+                + " Hash " + Base64.getEncoder().encodeToString(currentHash)
+                + " timestamp " + new Date(timestamp);
+    }
+
+    //::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    private static final long serialVersionUID = 202610181105L;
+}
@@ -0,0 +1,734 @@
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.zip.CRC32;
+import utils.Serializer;
+
+/**
+ * Motor de armazenamento dos blocos (Append-Only Segment Log).
+ * <p>
+ * Substitui a reescrita completa do ficheiro mestre {@code blockchain.bch} a
+ * cada bloco novo. Os blocos são escritos uma única vez, em sequência, em
+ * ficheiros de segmento ({@code segment_000000.seg}, ...) e um pequeno índice
+ * ({@code blocks.idx}) guarda a posição de cada bloco:
+ * <ul>
+ * <li><b>Append:</b> Custa O(tamanho do bloco) - só o registo novo e uma
+ * entrada de índice são escritos.</li>
+ * <li><b>Arranque:</b> Lê apenas o índice de cabeçalhos (ID, posição, hash,
+ * hash anterior, merkle root, timestamp, dificuldade, versão do PoW, nonce,
+ * extraNonce) em vez de
+ * desserializar a cadeia inteira.</li>
+ * <li><b>Leitura:</b> Os segmentos são mapeados em memória
+ * ({@link MappedByteBuffer}) e o corpo de cada bloco só é desserializado
+ * quando é pedido. O heap guarda apenas o índice compacto e uma pequena cache
+ * dos últimos blocos lidos.</li>
+ * <li><b>Recuperação:</b> Registos escritos no segmento mas ausentes do índice
+ * (ex: falha de energia) são recuperados através do CRC32 de cada registo.</li>
+ * <li><b>Remoção:</b> Os blocos removidos ({@link #truncate(int)}) estão sempre
+ * no fim do log, por isso os ficheiros são cortados fisicamente e não ficam
+ * registos mortos (não é preciso compactar).</li>
+ * </ul>
+ * <p>
+ * <b>Formato do registo:</b> [magic][ID][tamanho][crc32][bloco serializado]
+ * <br><b>Formato do índice:</b> [magic][versão] seguido de entradas
+ * [ID][segmento][offset][tamanho][timestamp][dificuldade][versão do PoW]
+ * [nonce][extraNonce][hash]
+ * [hash anterior][merkle root]. Um índice de outra versão é reconstruído a
+ * partir dos segmentos.
+ * <p>
+ * Existe uma única instância por diretoria (ver {@link #open(String)}), para
+ * que todas as instâncias de {@link BlockChain} partilhem o mesmo estado.
+ * Created on 18/10/2026, 10:12:40
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public class BlockStore {
+
+    /**
+     * Prefixo e extensão dos ficheiros de segmento.
+     */
+    public static final String SEGMENT_PREFIX = "segment_";
+    public static final String SEGMENT_EXTENSION = ".seg";
+
+    /**
+     * Nome do ficheiro de índice (ID -> posição no segmento).
+     */
+    public static final String INDEX_FILE = "blocks.idx";
+
+    /**
+     * Tamanho a partir do qual é aberto um segmento novo.
+     */
+    public static final long SEGMENT_MAX_BYTES = 16L * 1024 * 1024;
+
+    static final int RECORD_MAGIC = 0x424C4B31; // "BLK1"
+    static final int RECORD_HEADER = 16;
+
+    static final int INDEX_MAGIC = 0x49445831; // "IDX1"
+    static final int INDEX_VERSION = 4;
+    static final int INDEX_HEADER = 8;
+    static final int HASH_SIZE = 32;
+    static final int INDEX_ENTRY = 4 + 4 + 8 + 4 + 8 + 4 + 4 + 4 + 4 + 3 * HASH_SIZE;
+
+    /**
+     * Número de blocos desserializados mantidos em cache (ex: o topo).
+     */
+    static final int BLOCK_CACHE_SIZE = 16;
+
+    /**
+     * Instâncias abertas, uma por diretoria canónica.
+     */
+    private static final Map<String, BlockStore> OPEN_STORES = new HashMap<>();
+
+    private final File folder;
+
+    // Índice em memória: a posição no array é o ID (altura) do bloco
+    private int[] segments = new int[64];
+    private long[] offsets = new long[64];
+    private int[] lengths = new int[64];
+    private int size;
+
+    // Cabeçalhos: arrays primitivos em vez de um objeto por bloco
+    private long[] timestamps = new long[64];
+    private int[] dificulties = new int[64];
+    private int[] powVersions = new int[64];
+    private int[] nonces = new int[64];
+    private int[] extraNonces = new int[64];
+    private byte[] hashes = new byte[64 * 3 * HASH_SIZE]; // [hash|anterior|merkle]
+
+    // Segmentos mapeados em memória (número do segmento -> mapa)
+    private final Map<Integer, MappedByteBuffer> mapped = new HashMap<>();
+
+    // Últimos blocos desserializados
+    private final Map<Integer, Block> cache = new LinkedHashMap<Integer, Block>(BLOCK_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Block> eldest) {
+            return size() > BLOCK_CACHE_SIZE;
+        }
+    };
+
+    // Segmento ativo (onde são feitos os appends)
+    private int activeSegment;
+    private FileChannel activeChannel;
+    private FileChannel indexChannel;
+
+    // Índice das transações (aberto a pedido)
+    private TransactionIndex transactions;
+    // ramos laterais (blocos fora da cadeia principal)
+    private BlockTree tree;
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: ABERTURA E FECHO
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    /**
+     * Abre (ou reutiliza) o armazenamento de blocos de uma diretoria.
+     *
+     * @param path Diretoria dos blocos (ex: data_blocks/).
+     * @return A instância partilhada do armazenamento.
+     * @throws IOException Erro de leitura do índice ou dos segmentos.
+     */
+    public static synchronized BlockStore open(String path) throws IOException {
+        File dir = new File(path).getCanonicalFile();
+        BlockStore store = OPEN_STORES.get(dir.getPath());
+        if (store == null) {
+            store = new BlockStore(dir);
+            OPEN_STORES.put(dir.getPath(), store);
+        }
+        return store;
+    }
+
+    /**
+     * Fecha o armazenamento de uma diretoria (ex: antes de apagar os
+     * ficheiros). A próxima chamada a {@link #open(String)} relê o disco.
+     *
+     * @param path Diretoria dos blocos.
+     */
+    public static synchronized void close(String path) {
+        try {
+            BlockStore store = OPEN_STORES.remove(new File(path).getCanonicalPath());
+            if (store != null) {
+                store.unmap(seg -> true);
+                store.closeChannels();
+                if (store.transactions != null) {
+                    store.transactions.close();
+                }
+            }
+        } catch (IOException ex) {
+            System.err.println("Erro ao fechar o armazenamento: " + ex.getMessage());
+        }
+    }
+
+    private BlockStore(File folder) throws IOException {
+        this.folder = folder;
+        folder.mkdirs();
+        if (!readIndex()) {
+            rebuildIndex();
+        }
+        recoverTail();
+        openChannels();
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: ESCRITA
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    /**
+     * Acrescenta um bloco ao fim do log.
+     *
+     * @param block O bloco a guardar. O ID tem de ser igual a {@link #size()}.
+     * @throws IOException Erro de escrita ou ID fora de sequência.
+     */
+    public synchronized void append(Block block) throws IOException {
+        if (block.getID() != size) {
+            throw new IOException("Block store: expected block " + size + " but got " + block.getID());
+        }
+        byte[] payload = Serializer.objectToByteArray(block);
+        if (activeChannel.size() > 0 && activeChannel.size() + RECORD_HEADER + payload.length > SEGMENT_MAX_BYTES) {
+            rollSegment();
+        }
+        long offset = activeChannel.size();
+        writeFully(activeChannel, record(block.getID(), payload), offset);
+        activeChannel.force(false);
+
+        ensureCapacity(size + 1);
+        segments[size] = activeSegment;
+        offsets[size] = offset;
+        lengths[size] = payload.length;
+        putHeader(size, block);
+        writeFully(indexChannel, indexEntry(size), indexChannel.size());
+        indexChannel.force(false);
+        size++;
+    }
+
+    /**
+     * Remove todos os blocos a partir de uma altura (ex: substituição da cadeia
+     * local por uma sincronização). O {@link TransactionIndex} deve ser
+     * cortado à mesma altura por quem chama.
+     * <p>
+     * Como o log é escrito por ordem de ID, os registos removidos estão sempre
+     * no fim: os segmentos seguintes são apagados e o segmento do primeiro
+     * registo removido é cortado nesse ponto.
+     *
+     * @param newSize Número de blocos a manter.
+     * @throws IOException Erro de escrita.
+     */
+    public synchronized void truncate(int newSize) throws IOException {
+        newSize = Math.max(newSize, 0);
+        if (newSize >= size) {
+            return;
+        }
+        int seg = segments[newSize];
+        long off = offsets[newSize];
+        size = newSize;
+        cache.clear();
+        // libertar os mapas antes de cortar ou apagar os ficheiros
+        unmap(n -> n >= seg);
+        indexChannel.truncate(INDEX_HEADER + (long) size * INDEX_ENTRY);
+        indexChannel.force(false);
+
+        activeChannel.close();
+        for (File f : listSegments()) {
+            if (segmentNumber(f) > seg) {
+                f.delete();
+            }
+        }
+        activeSegment = seg;
+        activeChannel = FileChannel.open(segmentFile(activeSegment).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        activeChannel.truncate(off);
+        activeChannel.force(false);
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: LEITURA
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    /**
+     * @return Número de blocos guardados (altura da cadeia + 1).
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Lê um bloco a partir do segmento mapeado em memória.
+     * <p>
+     * Apenas este bloco é desserializado; os últimos blocos lidos ficam em
+     * cache.
+     *
+     * @param id ID (altura) do bloco.
+     * @return O bloco desserializado.
+     * @throws IOException Erro de leitura ou registo corrompido.
+     */
+    public synchronized Block read(int id) throws IOException {
+        checkId(id);
+        Block b = cache.get(id);
+        if (b != null) {
+            return b;
+        }
+        ByteBuffer region = region(segments[id], offsets[id] + RECORD_HEADER, lengths[id]);
+        try (ObjectInputStream in = new ObjectInputStream(new BufferInputStream(region))) {
+            b = (Block) in.readObject();
+        } catch (ClassNotFoundException ex) {
+            throw new IOException("Block store: corrupted block " + id, ex);
+        }
+        cache.put(id, b);
+        return b;
+    }
+
+    /**
+     * Lê o registo de um bloco tal como está guardado (o bloco serializado),
+     * sem o desserializar. Usado para enviar blocos pela rede.
+     *
+     * @param id ID (altura) do bloco.
+     * @return Os bytes serializados do bloco.
+     * @throws IOException Erro de leitura.
+     */
+    public synchronized byte[] readRaw(int id) throws IOException {
+        checkId(id);
+        ByteBuffer region = region(segments[id], offsets[id] + RECORD_HEADER, lengths[id]);
+        byte[] payload = new byte[lengths[id]];
+        region.get(payload);
+        return payload;
+    }
+
+    /**
+     * Obtém o índice de transações desta diretoria, abrindo-o (e
+     * sincronizando-o com os blocos guardados) no primeiro acesso.
+     *
+     * @return O índice de transações.
+     * @throws IOException Erro de leitura ou reconstrução do índice.
+     */
+    public synchronized TransactionIndex getTransactionIndex() throws IOException {
+        if (transactions == null) {
+            transactions = new TransactionIndex(folder, this);
+        }
+        return transactions;
+    }
+
+    /**
+     * Obtém os ramos laterais desta diretoria (criados no primeiro acesso, só
+     * em memória).
+     *
+     * @return A árvore de ramos laterais.
+     */
+    public synchronized BlockTree getBlockTree() {
+        if (tree == null) {
+            tree = new BlockTree();
+        }
+        return tree;
+    }
+
+    /**
+     * Trabalho acumulado dos primeiros blocos, calculado no índice em memória
+     * (sem criar cabeçalhos).
+     *
+     * @param count Número de blocos a contar desde o Genesis.
+     * @return Soma do trabalho ({@link ProofOfWork#blockWork}).
+     */
+    public synchronized BigInteger getChainWork(int count) {
+        BigInteger work = BigInteger.ZERO;
+        for (int id = 0; id < Math.min(count, size); id++) {
+            work = work.add(ProofOfWork.blockWork(powVersions[id], dificulties[id]));
+        }
+        return work;
+    }
+
+    /**
+     * Obtém o cabeçalho de um bloco sem ler o corpo (O(1), só memória).
+     *
+     * @param id ID (altura) do bloco.
+     * @return O cabeçalho do bloco.
+     */
+    public synchronized BlockHeader getHeader(int id) {
+        checkId(id);
+        int base = id * 3 * HASH_SIZE;
+        return new BlockHeader(id,
+                Arrays.copyOfRange(hashes, base, base + HASH_SIZE),
+                Arrays.copyOfRange(hashes, base + HASH_SIZE, base + 2 * HASH_SIZE),
+                Arrays.copyOfRange(hashes, base + 2 * HASH_SIZE, base + 3 * HASH_SIZE),
+                timestamps[id], dificulties[id], powVersions[id], nonces[id], extraNonces[id]);
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Block " + id + " not in store (size " + size + ")");
+        }
+    }
+
+    /**
+     * Devolve a região de um segmento mapeado. O segmento ativo é remapeado
+     * quando cresceu para lá da zona mapeada.
+     */
+    private ByteBuffer region(int seg, long offset, int length) throws IOException {
+        MappedByteBuffer map = mapped.get(seg);
+        if (map == null || map.capacity() < offset + length) {
+            if (map != null) {
+                release(map); // mapa antigo, mais pequeno que o segmento
+            }
+            try (FileChannel ch = FileChannel.open(segmentFile(seg).toPath(), StandardOpenOption.READ)) {
+                map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            }
+            mapped.put(seg, map);
+        }
+        ByteBuffer region = map.duplicate();
+        region.position((int) offset).limit((int) (offset + length));
+        return region.slice();
+    }
+
+    /**
+     * Liberta os mapas dos segmentos indicados. Os mapas só são usados dentro
+     * dos métodos sincronizados (as regiões nunca saem desta classe), por isso
+     * podem ser libertados de imediato.
+     */
+    private void unmap(IntPredicate segs) {
+        mapped.entrySet().removeIf(e -> {
+            if (segs.test(e.getKey())) {
+                release(e.getValue());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Liberta já um mapa de memória, sem esperar pelo Garbage Collector: em
+     * Windows um ficheiro mapeado não pode ser cortado nem apagado. Sem acesso
+     * ao Unsafe o mapa fica para o GC.
+     *
+     * @param buffer Mapa que não volta a ser usado.
+     */
+    static void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field f = unsafeClass.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(f.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // fica para o Garbage Collector
+        }
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: ÍNDICE E RECUPERAÇÃO
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    /**
+     * Lê o índice do disco.
+     *
+     * @return false se o índice não existir ou for de outra versão.
+     */
+    private boolean readIndex() throws IOException {
+        File idx = new File(folder, INDEX_FILE);
+        if (!idx.exists() || idx.length() < INDEX_HEADER) {
+            return false;
+        }
+        // Uma única leitura sequencial de todo o índice
+        ByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(idx.toPath(), StandardOpenOption.READ)) {
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        try {
+            if (buf.getInt() != INDEX_MAGIC || buf.getInt() != INDEX_VERSION) {
+                return false;
+            }
+            Map<Integer, Long> segmentLengths = new HashMap<>();
+            size = 0;
+            while (buf.remaining() >= INDEX_ENTRY) {
+                int id = buf.getInt();
+                int seg = buf.getInt();
+                long off = buf.getLong();
+                int len = buf.getInt();
+                long segLength = segmentLengths.computeIfAbsent(seg, n -> segmentFile(n).length());
+                if (id != size || segLength < off + RECORD_HEADER + len) {
+                    break; // entrada incoerente - o resto é recuperado dos segmentos
+                }
+                ensureCapacity(size + 1);
+                segments[size] = seg;
+                offsets[size] = off;
+                lengths[size] = len;
+                timestamps[size] = buf.getLong();
+                dificulties[size] = buf.getInt();
+                powVersions[size] = buf.getInt();
+                nonces[size] = buf.getInt();
+                extraNonces[size] = buf.getInt();
+                buf.get(hashes, size * 3 * HASH_SIZE, 3 * HASH_SIZE);
+                size++;
+            }
+        } finally {
+            // o índice é reescrito ou cortado a seguir: libertar o mapa
+            release(buf);
+        }
+        // reescrever o índice se tiver entradas a mais (corrompidas)
+        if (INDEX_HEADER + (long) size * INDEX_ENTRY != idx.length()) {
+            writeIndex(idx);
+        }
+        return true;
+    }
+
+    /**
+     * Reconstrói o índice a partir dos segmentos (índice perdido ou antigo).
+     */
+    private void rebuildIndex() throws IOException {
+        size = 0;
+        for (File f : listSegments()) {
+            scanSegment(segmentNumber(f), 0);
+        }
+        writeIndex(new File(folder, INDEX_FILE));
+    }
+
+    /**
+     * Recupera registos válidos escritos depois da última entrada do índice.
+     */
+    private void recoverTail() throws IOException {
+        File[] all = listSegments();
+        if (all.length == 0) {
+            return;
+        }
+        int before = size;
+        int lastSeg = size == 0 ? segmentNumber(all[0]) : segments[size - 1];
+        long from = size == 0 ? 0 : offsets[size - 1] + RECORD_HEADER + lengths[size - 1];
+        for (File f : all) {
+            int seg = segmentNumber(f);
+            if (seg == lastSeg) {
+                scanSegment(seg, from);
+            } else if (seg > lastSeg) {
+                scanSegment(seg, 0);
+            }
+        }
+        if (size != before) {
+            writeIndex(new File(folder, INDEX_FILE));
+            System.out.println("Block store: recovered " + (size - before) + " blocks from segments");
+        }
+    }
+
+    /**
+     * Percorre um segmento e acrescenta ao índice os registos válidos que
+     * continuam a sequência. Um registo com um ID já indexado substitui esse
+     * bloco e os seguintes.
+     */
+    private void scanSegment(int seg, long from) throws IOException {
+        File f = segmentFile(seg);
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            long pos = from;
+            long end = raf.length();
+            while (pos + RECORD_HEADER <= end) {
+                raf.seek(pos);
+                int magic = raf.readInt();
+                int id = raf.readInt();
+                int len = raf.readInt();
+                int crc = raf.readInt();
+                if (magic != RECORD_MAGIC || len < 0 || pos + RECORD_HEADER + len > end) {
+                    break;
+                }
+                byte[] payload = new byte[len];
+                raf.readFully(payload);
+                if (crc32(payload) != crc) {
+                    break;
+                }
+                if (id <= size) {
+                    if (id < size) {
+                        size = id; // registo substituído mais tarde no log
+                    }
+                    Block b;
+                    try {
+                        b = (Block) Serializer.byteArrayToObject(payload);
+                    } catch (ClassNotFoundException ex) {
+                        break;
+                    }
+                    ensureCapacity(size + 1);
+                    segments[size] = seg;
+                    offsets[size] = pos;
+                    lengths[size] = len;
+                    putHeader(size, b);
+                    size++;
+                }
+                pos += RECORD_HEADER + len;
+            }
+        }
+    }
+
+    private void writeIndex(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER);
+            header.putInt(INDEX_MAGIC).putInt(INDEX_VERSION).flip();
+            writeFully(ch, header, 0);
+            long position = INDEX_HEADER;
+            for (int id = 0; id < size; id++) {
+                ByteBuffer entry = indexEntry(id);
+                writeFully(ch, entry, position);
+                position += INDEX_ENTRY;
+            }
+            ch.force(false);
+        }
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: UTILITÁRIOS
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    private void openChannels() throws IOException {
+        File[] all = listSegments();
+        activeSegment = all.length == 0 ? 0 : segmentNumber(all[all.length - 1]);
+        activeChannel = FileChannel.open(segmentFile(activeSegment).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // descartar lixo no fim do segmento ativo (escrita interrompida)
+        long end = size > 0 && segments[size - 1] == activeSegment
+                ? offsets[size - 1] + RECORD_HEADER + lengths[size - 1] : 0;
+        if (activeChannel.size() > end) {
+            activeChannel.truncate(end);
+        }
+        File idx = new File(folder, INDEX_FILE);
+        if (!idx.exists()) {
+            writeIndex(idx);
+        }
+        indexChannel = FileChannel.open(idx.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private void closeChannels() throws IOException {
+        if (activeChannel != null) {
+            activeChannel.close();
+        }
+        if (indexChannel != null) {
+            indexChannel.close();
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        activeChannel.close();
+        activeSegment++;
+        activeChannel = FileChannel.open(segmentFile(activeSegment).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private ByteBuffer record(int id, byte[] payload) {
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_HEADER + payload.length);
+        buf.putInt(RECORD_MAGIC).putInt(id).putInt(payload.length).putInt(crc32(payload)).put(payload);
+        buf.flip();
+        return buf;
+    }
+
+    private ByteBuffer indexEntry(int id) {
+        ByteBuffer buf = ByteBuffer.allocate(INDEX_ENTRY);
+        buf.putInt(id).putInt(segments[id]).putLong(offsets[id]).putInt(lengths[id]);
+        buf.putLong(timestamps[id]).putInt(dificulties[id]).putInt(powVersions[id]).putInt(nonces[id])
+                .putInt(extraNonces[id]);
+        buf.put(hashes, id * 3 * HASH_SIZE, 3 * HASH_SIZE);
+        buf.flip();
+        return buf;
+    }
+
+    /**
+     * Copia os campos do cabeçalho de um bloco para o índice em memória.
+     */
+    private void putHeader(int id, Block b) throws IOException {
+        timestamps[id] = b.getTimestamp();
+        dificulties[id] = b.getDificulty();
+        powVersions[id] = b.getPowVersion();
+        nonces[id] = b.getNonce();
+        extraNonces[id] = b.getExtraNonce();
+        int base = id * 3 * HASH_SIZE;
+        putHash(b.getCurrentHash(), base);
+        putHash(b.getPreviousHash(), base + HASH_SIZE);
+        putHash(b.getMerkleRoot(), base + 2 * HASH_SIZE);
+    }
+
+    private void putHash(byte[] hash, int position) throws IOException {
+        if (hash == null || hash.length != HASH_SIZE) {
+            throw new IOException("Block store: unsupported hash size");
+        }
+        System.arraycopy(hash, 0, hashes, position, HASH_SIZE);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > segments.length) {
+            int newLength = Math.max(capacity, segments.length * 2);
+            segments = Arrays.copyOf(segments, newLength);
+            offsets = Arrays.copyOf(offsets, newLength);
+            lengths = Arrays.copyOf(lengths, newLength);
+            timestamps = Arrays.copyOf(timestamps, newLength);
+            dificulties = Arrays.copyOf(dificulties, newLength);
+            powVersions = Arrays.copyOf(powVersions, newLength);
+            nonces = Arrays.copyOf(nonces, newLength);
+            extraNonces = Arrays.copyOf(extraNonces, newLength);
+            hashes = Arrays.copyOf(hashes, newLength * 3 * HASH_SIZE);
+        }
+    }
+
+    private File segmentFile(int number) {
+        return new File(folder, String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_EXTENSION));
+    }
+
+    private File[] listSegments() {
+        File[] files = folder.listFiles((d, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_EXTENSION));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, (a, b) -> Integer.compare(segmentNumber(a), segmentNumber(b)));
+        return files;
+    }
+
+    private static int segmentNumber(File f) {
+        String name = f.getName();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_EXTENSION.length()));
+    }
+
+    private static int crc32(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += ch.write(buf, position);
+        }
+    }
+
+    /**
+     * InputStream sobre uma região mapeada (evita copiar o bloco para o heap
+     * antes de o desserializar).
+     */
+    private static class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buf;
+
+        BufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buf.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buf.remaining());
+            buf.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+    }
+}
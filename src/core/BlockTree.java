@@ -0,0 +1,140 @@
+package core;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Ramos laterais da Blockchain: blocos válidos que não estão na cadeia
+ * principal.
+ * <p>
+ * A cadeia principal continua no {@link BlockStore} (por altura); esta árvore
+ * guarda os blocos concorrentes, indexados pelo hash, com o trabalho
+ * acumulado desde o Genesis. Quando um ramo passa a ter mais trabalho que a
+ * cadeia principal, {@link BlockChain#processBlock(Block)} reorganiza a
+ * cadeia e os blocos que saem passam para esta árvore (pode voltar atrás).
+ * <ul>
+ * <li><b>Profundidade:</b> só ramos que divergem nos últimos
+ * {@link #MAX_REORG_DEPTH} blocos.</li>
+ * <li><b>Limite:</b> no máximo {@link #MAX_BLOCKS} blocos; sai o mais
+ * antigo.</li>
+ * </ul>
+ * Só em memória: depois de reiniciar, os ramos voltam a chegar pela rede.
+ * Created on 18/10/2026, 23:41:27
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public class BlockTree {
+
+    /**
+     * Número máximo de blocos da cadeia principal desfeitos numa
+     * reorganização.
+     */
+    public static final int MAX_REORG_DEPTH = 100;
+
+    /**
+     * Número máximo de blocos nos ramos laterais.
+     */
+    public static final int MAX_BLOCKS = 512;
+
+    /**
+     * Um bloco de um ramo lateral.
+     */
+    static final class Node {
+
+        final Block block;
+        // trabalho desde o Genesis até este bloco (inclusive)
+        final BigInteger work;
+
+        Node(Block block, BigInteger work) {
+            this.block = block;
+            this.work = work;
+        }
+    }
+
+    // por hash do bloco, por ordem de chegada (o primeiro é o mais antigo)
+    private final LinkedHashMap<String, Node> nodes = new LinkedHashMap<>();
+
+    BlockTree() {
+    }
+
+    /**
+     * @param hash Hash de um bloco.
+     * @return true se o bloco está num ramo lateral.
+     */
+    public synchronized boolean contains(byte[] hash) {
+        return nodes.containsKey(key(hash));
+    }
+
+    synchronized Node get(byte[] hash) {
+        return nodes.get(key(hash));
+    }
+
+    /**
+     * Guarda um bloco num ramo lateral e remove os blocos que ficaram
+     * demasiado fundos ou em excesso.
+     *
+     * @param b O bloco.
+     * @param work Trabalho acumulado até ao bloco.
+     * @param mainSize Tamanho da cadeia principal.
+     */
+    synchronized void put(Block b, BigInteger work, int mainSize) {
+        nodes.put(key(b.getCurrentHash()), new Node(b, work));
+        prune(mainSize);
+    }
+
+    synchronized void remove(byte[] hash) {
+        nodes.remove(key(hash));
+    }
+
+    /**
+     * Caminho de um bloco até à cadeia principal.
+     *
+     * @param hash Hash do último bloco do ramo.
+     * @return Os blocos do ramo, por ordem de ID (o primeiro tem o pai na
+     * cadeia principal ou em falta).
+     */
+    synchronized List<Block> branch(byte[] hash) {
+        List<Block> path = new ArrayList<>();
+        Node n = nodes.get(key(hash));
+        while (n != null) {
+            path.add(n.block);
+            n = nodes.get(key(n.block.getPreviousHash()));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Remove os blocos abaixo da profundidade máxima de reorganização e, se
+     * necessário, os mais antigos.
+     *
+     * @param mainSize Tamanho da cadeia principal.
+     */
+    synchronized void prune(int mainSize) {
+        int minID = mainSize - 1 - MAX_REORG_DEPTH;
+        nodes.values().removeIf(n -> n.block.getID() <= minID);
+        while (nodes.size() > MAX_BLOCKS) {
+            nodes.remove(nodes.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * @return Número de blocos nos ramos laterais.
+     */
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    private static String key(byte[] hash) {
+        return Base64.getEncoder().encodeToString(hash);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BlockTree[" + nodes.size() + " side blocks]";
+    }
+}
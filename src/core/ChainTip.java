@@ -0,0 +1,62 @@
+package core;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+
+/**
+ * Resumo do topo de uma cadeia, trocado entre nós antes de sincronizar.
+ * <p>
+ * Substitui o envio da {@link BlockChain} inteira só para comparar alturas:
+ * é do tamanho de um cabeçalho, independente do tamanho da cadeia. O trabalho
+ * acumulado decide qual das cadeias é a melhor.
+ * Created on 18/10/2026, 21:40:18
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public class ChainTip implements Serializable {
+
+    private final int size;
+    private final BlockHeader top;
+    private final BigInteger work;
+
+    /**
+     * @param size Número de blocos da cadeia.
+     * @param top Cabeçalho do último bloco.
+     * @param work Trabalho acumulado da cadeia.
+     */
+    public ChainTip(int size, BlockHeader top, BigInteger work) {
+        this.size = size;
+        this.top = top;
+        this.work = work;
+    }
+
+    /**
+     * @return Número de blocos da cadeia (altura do topo + 1).
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return Cabeçalho do último bloco.
+     */
+    public BlockHeader getTop() {
+        return top;
+    }
+
+    /**
+     * @return Trabalho acumulado da cadeia (null se enviado por um nó
+     * antigo).
+     */
+    public BigInteger getWork() {
+        return work;
+    }
+
+    @Override
+    public String toString() {
+        return "size " + size + " work " + work + " top [" + top + "]";
+    }
+
+    //::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    private static final long serialVersionUID = 202610182140L;
+}
@@ -0,0 +1,120 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resultado de entregar um bloco à cadeia ({@link BlockChain#processBlock}).
+ * <p>
+ * Numa reorganização indica os blocos que saíram da cadeia principal (do topo
+ * para baixo) e os que entraram (por ordem de ID): as carteiras e a mempool
+ * só desfazem e refazem esses blocos.
+ * Created on 18/10/2026, 23:48:02
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public class ChainUpdate {
+
+    /**
+     * O que aconteceu ao bloco.
+     */
+    public enum Status {
+        /**
+         * O bloco estendeu a cadeia principal.
+         */
+        EXTENDED,
+        /**
+         * O bloco completou um ramo com mais trabalho: a cadeia principal
+         * mudou para esse ramo.
+         */
+        REORGANIZED,
+        /**
+         * O bloco ficou num ramo lateral (menos trabalho que a cadeia
+         * principal).
+         */
+        SIDE_BRANCH,
+        /**
+         * O bloco já era conhecido (ou é demasiado antigo) e foi ignorado.
+         */
+        KNOWN,
+        /**
+         * O bloco anterior não é conhecido: o bloco é órfão.
+         */
+        ORPHAN
+    }
+
+    private final Status status;
+    private final Block block;
+    private final List<Block> disconnected;
+    private final List<Block> connected;
+
+    /**
+     * @param status O que aconteceu ao bloco.
+     * @param block O bloco entregue.
+     * @param disconnected Blocos que saíram da cadeia principal (do topo para
+     * baixo).
+     * @param connected Blocos que entraram na cadeia principal (por ordem).
+     */
+    public ChainUpdate(Status status, Block block, List<Block> disconnected, List<Block> connected) {
+        this.status = status;
+        this.block = block;
+        this.disconnected = disconnected;
+        this.connected = connected;
+    }
+
+    /**
+     * @param status {@link Status#SIDE_BRANCH}, {@link Status#KNOWN} ou
+     * {@link Status#ORPHAN} (a cadeia principal não mudou), ou
+     * {@link Status#EXTENDED}.
+     * @param block O bloco entregue.
+     * @return O resultado.
+     */
+    public static ChainUpdate of(Status status, Block block) {
+        List<Block> connected = new ArrayList<>();
+        if (status == Status.EXTENDED) {
+            connected.add(block);
+        }
+        return new ChainUpdate(status, block, new ArrayList<>(), connected);
+    }
+
+    /**
+     * @return O que aconteceu ao bloco.
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return O bloco entregue.
+     */
+    public Block getBlock() {
+        return block;
+    }
+
+    /**
+     * @return Blocos que saíram da cadeia principal, do topo para baixo.
+     */
+    public List<Block> getDisconnected() {
+        return disconnected;
+    }
+
+    /**
+     * @return Blocos que entraram na cadeia principal, por ordem de ID.
+     */
+    public List<Block> getConnected() {
+        return connected;
+    }
+
+    /**
+     * @return true se o bloco foi guardado (na cadeia principal ou num ramo
+     * lateral).
+     */
+    public boolean isAccepted() {
+        return status == Status.EXTENDED || status == Status.REORGANIZED || status == Status.SIDE_BRANCH;
+    }
+
+    @Override
+    public String toString() {
+        return status + " block " + block.getID() + " (-" + disconnected.size() + " +" + connected.size() + ")";
+    }
+}
@@ -0,0 +1,125 @@
+package core;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Ajuste automático da dificuldade a partir dos timestamps dos blocos.
+ * <p>
+ * A dificuldade (em bits, ver {@link ProofOfWork#VERSION_BITS}) é recalculada
+ * a cada {@link #WINDOW} blocos, comparando o tempo real da última janela com
+ * o tempo esperado ({@link #WINDOW} x {@link #TARGET_BLOCK_TIME}):
+ * <ul>
+ * <li>Cada bit a mais duplica o trabalho, por isso o ajuste é de
+ * {@code floor(log2(esperado / real))} bits, limitado a
+ * {@link #MAX_STEP} bits por janela (evita oscilações com poucos nós).</li>
+ * <li>O cálculo usa apenas inteiros (deslocamentos e comparações), para que
+ * todos os nós obtenham exatamente o mesmo valor - é uma regra de
+ * consenso, verificada em {@link BlockChain#add(Block)}.</li>
+ * <li>Fora das alturas de ajuste, o bloco herda a dificuldade do anterior.</li>
+ * </ul>
+ * Os timestamps também são regras de consenso ({@link #checkTimestamp}):
+ * posteriores à mediana dos últimos {@link #MEDIAN_SPAN} blocos e não mais de
+ * {@link #MAX_FUTURE} no futuro, para que um mineiro não consiga manipular a
+ * janela.
+ * Created on 18/10/2026, 16:10:27
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public final class DifficultyRetarget {
+
+    /**
+     * Tempo desejado entre blocos (ms).
+     */
+    public static final long TARGET_BLOCK_TIME = 30_000;
+    /**
+     * Número de intervalos entre ajustes.
+     */
+    public static final int WINDOW = 10;
+    /**
+     * Variação máxima (bits) num ajuste.
+     */
+    public static final int MAX_STEP = 4;
+    /**
+     * Dificuldade mínima (bits).
+     */
+    public static final int MIN_BITS = 8;
+    /**
+     * Número de blocos usados na mediana dos timestamps.
+     */
+    public static final int MEDIAN_SPAN = 11;
+    /**
+     * Desvio máximo de um timestamp em relação ao relógio local (ms).
+     */
+    public static final long MAX_FUTURE = 2 * 60_000;
+
+    private DifficultyRetarget() {
+    }
+
+    /**
+     * Calcula a dificuldade exigida para o bloco seguinte da cadeia.
+     *
+     * @param headers Acesso aos cabeçalhos por altura.
+     * @param height Altura do novo bloco (número de blocos anteriores).
+     * @return Dificuldade em bits.
+     */
+    public static int nextBits(IntFunction<BlockHeader> headers, int height) {
+        BlockHeader last = headers.apply(height - 1);
+        int bits = last.getDificultyBits();
+        if (height % WINDOW != 0 || height <= WINDOW) {
+            return bits;
+        }
+        BlockHeader first = headers.apply(height - 1 - WINDOW);
+        long actual = Math.max(1, last.getTimestamp() - first.getTimestamp());
+        long expected = WINDOW * TARGET_BLOCK_TIME;
+
+        int delta = 0;
+        // blocos rápidos: +1 bit por cada duplicação do tempo real
+        while (delta < MAX_STEP && (actual << (delta + 1)) <= expected) {
+            delta++;
+        }
+        // blocos lentos: -1 bit por cada duplicação do tempo esperado
+        while (delta <= 0 && delta > -MAX_STEP && (expected << (1 - delta)) <= actual) {
+            delta--;
+        }
+        return Math.max(MIN_BITS, Math.min(ProofOfWork.MAX_BITS, bits + delta));
+    }
+
+    /**
+     * Mediana dos timestamps dos últimos {@link #MEDIAN_SPAN} blocos.
+     *
+     * @param headers Acesso aos cabeçalhos por altura.
+     * @param height Altura do novo bloco.
+     * @return O timestamp mediano.
+     */
+    public static long medianTimePast(IntFunction<BlockHeader> headers, int height) {
+        int count = Math.min(MEDIAN_SPAN, height);
+        if (count == 0) {
+            return Long.MIN_VALUE;
+        }
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = headers.apply(height - 1 - i).getTimestamp();
+        }
+        Arrays.sort(times);
+        return times[count / 2];
+    }
+
+    /**
+     * Valida o timestamp de um bloco novo.
+     *
+     * @param headers Acesso aos cabeçalhos por altura.
+     * @param height Altura do novo bloco.
+     * @param timestamp Timestamp do novo bloco.
+     * @throws Exception Se o timestamp for anterior à mediana ou demasiado no
+     * futuro.
+     */
+    public static void checkTimestamp(IntFunction<BlockHeader> headers, int height, long timestamp) throws Exception {
+        if (timestamp <= medianTimePast(headers, height)) {
+            throw new Exception("Consensus Error: Block timestamp is too old.");
+        }
+        if (timestamp > System.currentTimeMillis() + MAX_FUTURE) {
+            throw new Exception("Consensus Error: Block timestamp is in the future.");
+        }
+    }
+}
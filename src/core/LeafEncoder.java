@@ -0,0 +1,42 @@
+package core;
+
+import java.io.Serializable;
+
+/**
+ * Codificação das folhas de uma {@link MerkleTree}: converte um elemento nos
+ * bytes cujo hash é a folha.
+ * <p>
+ * A codificação faz parte do consenso (define a merkleRoot do bloco), por isso
+ * tem de ser determinística e igual em todos os nós, independentemente da JVM
+ * e da versão das classes. As implementações habituais estão em
+ * {@link StandardLeafEncoder}; uma árvore pode receber outra no construtor.
+ * Created on 18/10/2026, 18:45:10
+ *
+ * @author aluno_25979, aluno_25946
+ * @param <T> tipo dos elementos
+ */
+@FunctionalInterface
+public interface LeafEncoder<T> extends Serializable {
+
+    /**
+     * Codifica um elemento.
+     *
+     * @param element Elemento da árvore.
+     * @return Bytes da folha (antes do hash).
+     * @throws IllegalArgumentException Se o elemento não puder ser codificado.
+     */
+    public byte[] encode(T element);
+
+    /**
+     * Elementos que definem a sua própria codificação canónica (compacta e
+     * estável), usada por {@link StandardLeafEncoder#CANONICAL}.
+     */
+    public interface Canonical {
+
+        /**
+         * @return Codificação canónica do elemento - os mesmos campos dão
+         * sempre os mesmos bytes.
+         */
+        public byte[] toCanonicalBytes();
+    }
+}
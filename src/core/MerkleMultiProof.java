@@ -0,0 +1,241 @@
+package core;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prova de Merkle de várias folhas da mesma árvore (multi-prova).
+ * <p>
+ * Em vez de uma prova por folha, guarda uma única vez os hashes necessários
+ * para subir de todas as folhas até à raiz:
+ * <ul>
+ * <li><b>leafCount:</b> número de folhas da árvore (define a forma de cada
+ * nível e os nós sem irmão).</li>
+ * <li><b>indexes:</b> as posições das folhas provadas, por ordem
+ * crescente.</li>
+ * <li><b>hashes:</b> os irmãos que não se conseguem calcular a partir das
+ * folhas provadas, por ordem de nível e de posição, num único array.</li>
+ * </ul>
+ * Os nós partilhados pelos caminhos das várias folhas são calculados uma só
+ * vez, por isso a verificação faz no máximo um hash por nó do conjunto de
+ * caminhos e a prova nunca repete hashes.
+ * Created on 18/10/2026, 20:31:47
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public final class MerkleMultiProof implements Serializable {
+
+    private final int leafCount;
+    private final int[] indexes;
+    private final byte[] hashes;
+
+    MerkleMultiProof(int leafCount, int[] indexes, byte[] hashes) {
+        if (leafCount <= 0 || indexes.length == 0) {
+            throw new IllegalArgumentException("Merkle Error: empty multi-proof");
+        }
+        for (int i = 0; i < indexes.length; i++) {
+            if (indexes[i] < 0 || indexes[i] >= leafCount || (i > 0 && indexes[i] <= indexes[i - 1])) {
+                throw new IllegalArgumentException("Merkle Error: invalid multi-proof index " + indexes[i]);
+            }
+        }
+        if (hashes.length % MerkleTree.HASH_SIZE != 0) {
+            throw new IllegalArgumentException("Merkle Error: invalid multi-proof hash size");
+        }
+        this.leafCount = leafCount;
+        this.indexes = indexes;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Constrói a multi-prova a partir dos hashes de uma árvore.
+     *
+     * @param leafCount Número de folhas.
+     * @param indexes Posições das folhas (ordenadas e sem repetições).
+     * @param node Hash de um nó: (altura a contar das folhas, posição).
+     * @return A multi-prova.
+     */
+    static MerkleMultiProof build(int leafCount, int[] indexes, NodeHash node) {
+        ByteBuffer out = ByteBuffer.allocate(indexes.length * MerkleTree.levels(leafCount) * MerkleTree.HASH_SIZE);
+        int[] known = indexes.clone();
+        int size = known.length;
+        for (int h = 0; h < MerkleTree.levels(leafCount) - 1; h++) {
+            int width = MerkleTree.levelSize(leafCount, h);
+            int parents = 0;
+            for (int k = 0; k < size; k++) {
+                int i = known[k];
+                if ((i & 1) == 0 && k + 1 < size && known[k + 1] == i + 1) {
+                    // os dois filhos são conhecidos
+                    k++;
+                } else if ((i ^ 1) < width) {
+                    out.put(node.hash(h, i ^ 1));
+                }
+                known[parents++] = i / 2;
+            }
+            size = parents;
+        }
+        return new MerkleMultiProof(leafCount, indexes.clone(), Arrays.copyOf(out.array(), out.position()));
+    }
+
+    /**
+     * Acesso aos hashes da árvore durante a construção da prova.
+     */
+    interface NodeHash {
+
+        byte[] hash(int height, int index);
+    }
+
+    /**
+     * @return Número de folhas da árvore.
+     */
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    /**
+     * @return Cópia das posições das folhas provadas (ordem crescente).
+     */
+    public int[] getIndexes() {
+        return indexes.clone();
+    }
+
+    /**
+     * @return Número de hashes guardados na prova.
+     */
+    public int getHashCount() {
+        return hashes.length / MerkleTree.HASH_SIZE;
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: VERIFICAÇÃO
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+    /**
+     * Calcula a raiz a partir dos hashes das folhas provadas.
+     *
+     * @param leafHashes Hashes das folhas, pela ordem de {@link #getIndexes()}.
+     * @return A raiz implicada pela prova, ou null se a prova não tiver os
+     * hashes necessários (ou tiver hashes a mais).
+     */
+    public byte[] computeRoot(List<byte[]> leafHashes) {
+        if (leafHashes.size() != indexes.length) {
+            return null;
+        }
+        int[] known = indexes.clone();
+        byte[][] nodes = leafHashes.toArray(new byte[0][]);
+        int size = known.length;
+        int next = 0;
+        for (int h = 0; h < MerkleTree.levels(leafCount) - 1; h++) {
+            int width = MerkleTree.levelSize(leafCount, h);
+            int parents = 0;
+            for (int k = 0; k < size; k++) {
+                int i = known[k];
+                byte[] parent;
+                if ((i & 1) == 0 && k + 1 < size && known[k + 1] == i + 1) {
+                    parent = MerkleTree.getHashValue(MerkleTree.concatenate(nodes[k], nodes[k + 1]));
+                    k++;
+                } else if ((i ^ 1) < width) {
+                    if (next == hashes.length) {
+                        return null;
+                    }
+                    byte[] sibling = Arrays.copyOfRange(hashes, next, next + MerkleTree.HASH_SIZE);
+                    next += MerkleTree.HASH_SIZE;
+                    parent = MerkleTree.getHashValue((i & 1) == 0
+                            ? MerkleTree.concatenate(nodes[k], sibling)
+                            : MerkleTree.concatenate(sibling, nodes[k]));
+                } else {
+                    // último nó de um nível ímpar
+                    parent = MerkleTree.getHashValue(nodes[k]);
+                }
+                known[parents] = i / 2;
+                nodes[parents++] = parent;
+            }
+            size = parents;
+        }
+        return next == hashes.length ? nodes[0] : null;
+    }
+
+    /**
+     * Verifica a prova contra uma raiz conhecida (ex: a merkleRoot do bloco).
+     *
+     * @param leafHashes Hashes das folhas, pela ordem de {@link #getIndexes()}.
+     * @param root Raiz esperada.
+     * @return true se todas as folhas pertencem à árvore com esta raiz.
+     */
+    public boolean verify(List<byte[]> leafHashes, byte[] root) {
+        for (byte[] leaf : leafHashes) {
+            if (leaf.length != MerkleTree.HASH_SIZE) {
+                return false;
+            }
+        }
+        byte[] computed = computeRoot(leafHashes);
+        return computed != null && Arrays.equals(computed, root);
+    }
+
+    /**
+     * Verifica a prova de vários elementos.
+     *
+     * @param data Elementos, pela ordem de {@link #getIndexes()}.
+     * @param encoder Codificação das folhas da árvore.
+     * @param root Raiz esperada.
+     * @return true se todos os elementos pertencem à árvore com esta raiz.
+     */
+    public <T> boolean verify(List<? extends T> data, LeafEncoder<? super T> encoder, byte[] root) {
+        List<byte[]> leafHashes = new ArrayList<>(data.size());
+        for (T elem : data) {
+            leafHashes.add(MerkleTree.getHashValue(encoder.encode(elem)));
+        }
+        return verify(leafHashes, root);
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: FORMATO BINÁRIO
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+    /**
+     * @return Formato binário: folhas (4), número de índices (4), índices (4
+     * cada), hashes.
+     */
+    public byte[] toBytes() {
+        ByteBuffer buf = ByteBuffer.allocate(8 + 4 * indexes.length + hashes.length);
+        buf.putInt(leafCount).putInt(indexes.length);
+        for (int index : indexes) {
+            buf.putInt(index);
+        }
+        return buf.put(hashes).array();
+    }
+
+    /**
+     * @param data Bytes de {@link #toBytes()}.
+     * @return A multi-prova.
+     * @throws IllegalArgumentException Se os bytes não formarem uma prova.
+     */
+    public static MerkleMultiProof fromBytes(byte[] data) {
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        if (buf.remaining() < 8) {
+            throw new IllegalArgumentException("Merkle Error: truncated multi-proof");
+        }
+        int leafCount = buf.getInt();
+        int count = buf.getInt();
+        if (count < 0 || count > buf.remaining() / 4) {
+            throw new IllegalArgumentException("Merkle Error: truncated multi-proof");
+        }
+        int[] indexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            indexes[i] = buf.getInt();
+        }
+        byte[] hashes = new byte[buf.remaining()];
+        buf.get(hashes);
+        return new MerkleMultiProof(leafCount, indexes, hashes);
+    }
+
+    @Override
+    public String toString() {
+        return "MerkleMultiProof[leafs " + leafCount + ", indexes " + indexes.length + ", hashes " + getHashCount() + "]";
+    }
+
+    //::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    private static final long serialVersionUID = 202610182031L;
+}
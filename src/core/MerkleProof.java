@@ -0,0 +1,265 @@
+package core;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prova de Merkle compacta de uma folha.
+ * <p>
+ * Guarda só o necessário para subir da folha até à raiz:
+ * <ul>
+ * <li><b>index:</b> posição da folha. O bit {@code h} indica se o nó na altura
+ * {@code h} é o filho da direita (1) ou da esquerda (0) - é a máscara de
+ * direções do caminho.</li>
+ * <li><b>lonely:</b> máscara das alturas em que o nó não tem irmão (último nó
+ * de um nível ímpar, cujo pai é {@code hash(nó)}).</li>
+ * <li><b>siblings:</b> os hashes dos irmãos, por ordem, num único array.</li>
+ * </ul>
+ * A verificação calcula exatamente um hash por nível e não tem de adivinhar a
+ * forma da árvore, ao contrário das listas de
+ * {@link MerkleTree#getProof(Object)} (cerca de metade do tamanho: não inclui
+ * o próprio nó em cada nível nem a raiz). As listas antigas convertem-se com
+ * {@link #fromLegacy}.
+ * Created on 18/10/2026, 19:42:05
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public final class MerkleProof implements Serializable {
+
+    private final int index;
+    private final int levels;
+    private final long lonely;
+    private final byte[] siblings;
+
+    MerkleProof(int index, int levels, long lonely, byte[] siblings) {
+        if (levels < 0 || levels > Long.SIZE - 1) {
+            throw new IllegalArgumentException("Merkle Error: invalid proof height " + levels);
+        }
+        if (siblings.length != (levels - Long.bitCount(lonely)) * MerkleTree.HASH_SIZE) {
+            throw new IllegalArgumentException("Merkle Error: proof siblings do not match its shape");
+        }
+        this.index = index;
+        this.levels = levels;
+        this.lonely = lonely;
+        this.siblings = siblings;
+    }
+
+    /**
+     * @return Índice da folha na árvore.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return Número de níveis entre a folha e a raiz.
+     */
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * @return Número de hashes de irmãos na prova.
+     */
+    public int getSiblingCount() {
+        return siblings.length / MerkleTree.HASH_SIZE;
+    }
+
+    /**
+     * @param k Posição do irmão (a contar da folha).
+     * @return Cópia do hash do irmão.
+     */
+    public byte[] getSibling(int k) {
+        return Arrays.copyOfRange(siblings, k * MerkleTree.HASH_SIZE, (k + 1) * MerkleTree.HASH_SIZE);
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: VERIFICAÇÃO
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+    /**
+     * Calcula a raiz a partir do hash da folha (um hash por nível).
+     *
+     * @param leafHash Hash da folha ({@link MerkleTree#leafHash}).
+     * @return A raiz implicada pela prova.
+     */
+    public byte[] computeRoot(byte[] leafHash) {
+        byte[] current = leafHash;
+        int k = 0;
+        for (int h = 0; h < levels; h++) {
+            if ((lonely >>> h & 1) == 1) {
+                current = MerkleTree.getHashValue(current);
+                continue;
+            }
+            byte[] pair = new byte[2 * MerkleTree.HASH_SIZE];
+            boolean right = (index >>> h & 1) == 1;
+            System.arraycopy(siblings, k * MerkleTree.HASH_SIZE, pair, right ? 0 : MerkleTree.HASH_SIZE, MerkleTree.HASH_SIZE);
+            System.arraycopy(current, 0, pair, right ? MerkleTree.HASH_SIZE : 0, MerkleTree.HASH_SIZE);
+            current = MerkleTree.getHashValue(pair);
+            k++;
+        }
+        return current;
+    }
+
+    /**
+     * Verifica a prova contra uma raiz conhecida (ex: a merkleRoot do bloco).
+     *
+     * @param leafHash Hash da folha.
+     * @param root Raiz esperada.
+     * @return true se a folha pertence à árvore com esta raiz.
+     */
+    public boolean verify(byte[] leafHash, byte[] root) {
+        return leafHash.length == MerkleTree.HASH_SIZE && Arrays.equals(computeRoot(leafHash), root);
+    }
+
+    /**
+     * Verifica a prova de um elemento.
+     *
+     * @param data Elemento.
+     * @param encoder Codificação das folhas da árvore.
+     * @param root Raiz esperada.
+     * @return true se o elemento pertence à árvore com esta raiz.
+     */
+    public <T> boolean verify(T data, LeafEncoder<? super T> encoder, byte[] root) {
+        return verify(MerkleTree.getHashValue(encoder.encode(data)), root);
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: FORMATO BINÁRIO E LISTAS ANTIGAS
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+
+    /**
+     * @return Formato binário: index (4), níveis (1), lonely (8), irmãos.
+     */
+    public byte[] toBytes() {
+        return ByteBuffer.allocate(4 + 1 + 8 + siblings.length)
+                .putInt(index).put((byte) levels).putLong(lonely).put(siblings).array();
+    }
+
+    /**
+     * @param data Bytes de {@link #toBytes()}.
+     * @return A prova.
+     * @throws IllegalArgumentException Se os bytes não formarem uma prova.
+     */
+    public static MerkleProof fromBytes(byte[] data) {
+        if (data.length < 13) {
+            throw new IllegalArgumentException("Merkle Error: truncated proof");
+        }
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        int index = buf.getInt();
+        int levels = buf.get();
+        long lonely = buf.getLong();
+        byte[] siblings = new byte[buf.remaining()];
+        buf.get(siblings);
+        return new MerkleProof(index, levels, lonely, siblings);
+    }
+
+    /**
+     * Converte para o formato de {@link MerkleTree#getProof(Object)}: por
+     * nível, o par [esquerda, direita] (ou só o nó, se não tiver irmão), e no
+     * fim a raiz.
+     *
+     * @param leafHash Hash da folha.
+     * @return Lista de hashes no formato antigo.
+     */
+    public List<byte[]> toLegacy(byte[] leafHash) {
+        List<byte[]> list = new ArrayList<>();
+        byte[] current = leafHash;
+        int k = 0;
+        for (int h = 0; h < levels; h++) {
+            if ((lonely >>> h & 1) == 1) {
+                list.add(current);
+                current = MerkleTree.getHashValue(current);
+                continue;
+            }
+            byte[] sibling = getSibling(k++);
+            boolean right = (index >>> h & 1) == 1;
+            byte[] left = right ? sibling : current;
+            byte[] rightNode = right ? current : sibling;
+            list.add(left);
+            list.add(rightNode);
+            current = MerkleTree.getHashValue(MerkleTree.concatenate(left, rightNode));
+        }
+        list.add(current);
+        return list;
+    }
+
+    /**
+     * Converte uma prova no formato antigo (lista de hashes terminada pela
+     * raiz). Cada nível é reconhecido pelo hash do nível seguinte, a partir
+     * da folha.
+     *
+     * @param leafHash Hash da folha.
+     * @param legacy Lista de {@link MerkleTree#getProof(Object)}.
+     * @return A prova compacta, ou null se a lista não prova esta folha.
+     */
+    public static MerkleProof fromLegacy(byte[] leafHash, List<byte[]> legacy) {
+        if (legacy == null || legacy.isEmpty()) {
+            return null;
+        }
+        byte[] current = leafHash;
+        int index = 0;
+        long lonely = 0;
+        ByteBuffer siblings = ByteBuffer.allocate(legacy.size() * MerkleTree.HASH_SIZE);
+        int k = 0;
+        int h = 0;
+        int last = legacy.size() - 1;
+        while (k < last) {
+            if (h >= Integer.SIZE - 1) {
+                return null;
+            }
+            byte[] parent;
+            if (isParent(MerkleTree.concatenate(legacy.get(k), legacy.get(k + 1)), legacy, k + 2)) {
+                // par [esquerda, direita]
+                boolean right;
+                if (Arrays.equals(legacy.get(k), current)) {
+                    right = false;
+                } else if (Arrays.equals(legacy.get(k + 1), current)) {
+                    right = true;
+                } else {
+                    return null;
+                }
+                siblings.put(legacy.get(right ? k : k + 1));
+                index |= right ? 1 << h : 0;
+                parent = MerkleTree.getHashValue(MerkleTree.concatenate(legacy.get(k), legacy.get(k + 1)));
+                k += 2;
+            } else if (Arrays.equals(legacy.get(k), current) && isParent(current, legacy, k + 1)) {
+                // nó sem irmão
+                lonely |= 1L << h;
+                parent = MerkleTree.getHashValue(current);
+                k += 1;
+            } else {
+                return null;
+            }
+            current = parent;
+            h++;
+        }
+        if (!Arrays.equals(legacy.get(last), current)) {
+            return null;
+        }
+        byte[] sib = Arrays.copyOf(siblings.array(), siblings.position());
+        return new MerkleProof(index, h, lonely, sib);
+    }
+
+    /**
+     * @return true se hash(data) é o nó seguinte da lista: na posição
+     * {@code from} (filho da esquerda ou raiz) ou {@code from + 1} (filho da
+     * direita, depois do irmão).
+     */
+    private static boolean isParent(byte[] data, List<byte[]> legacy, int from) {
+        byte[] parent = MerkleTree.getHashValue(data);
+        return (from < legacy.size() && Arrays.equals(legacy.get(from), parent))
+                || (from + 1 < legacy.size() && Arrays.equals(legacy.get(from + 1), parent));
+    }
+
+    @Override
+    public String toString() {
+        return "MerkleProof[index " + index + ", levels " + levels + ", siblings " + getSiblingCount() + "]";
+    }
+
+    //::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    private static final long serialVersionUID = 202610181942L;
+}
@@ -21,15 +21,22 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
 import utils.SecurityUtils;
 
 /**
@@ -41,11 +48,36 @@ import utils.SecurityUtils;
  */
 public final class MerkleTree<T> implements Serializable {
     public final static String HASH_ALGORITHM= "SHA3-256";
+    /**
+     * minimum number of hashes of a level to calculate it in parallel
+     */
+    public final static int PARALLEL_THRESHOLD = 256;
+    /**
+     * number of hashes calculated by each fork/join task
+     */
+    final static int PARALLEL_GRAIN = 64;
 
-    // merkle tree hashs
-    List<List<byte[]>> hashTree;
+    /**
+     * size of the hashs in the tree (SHA3-256)
+     */
+    public final static int HASH_SIZE = 32;
+
+    // all the hashs of the tree in one array, level by level from the leafs
+    // to the root; each level reserves room for the capacity of the level
+    // (null in a loaded tree until the levels are rebuilt)
+    transient byte[] hashes;
+    // number of leafs reserved in hashes (>= number of elements)
+    transient int capacity;
+    // first node of each level in hashes (counted from the leafs)
+    transient int[] offsets;
+    // leaf hash -> index of the element (built on the first search)
+    transient Map<ByteBuffer, Integer> leafIndex;
+    // root of a tree loaded without levels (null after the levels are built)
+    transient byte[] savedRoot;
     // elements of tree
     List<T> elements;
+    // encoding of the leafs (null in trees saved before the canonical encoding)
+    LeafEncoder<? super T> encoder;
 
     /**
      * Builds a merkle tree with an array of data
@@ -63,27 +95,119 @@ public final class MerkleTree<T> implements Serializable {
      * @param listOfData list of data
      */
     public MerkleTree(List<T> listOfData) {
-        this(); //build lists
+        this(listOfData, StandardLeafEncoder.CANONICAL);
+    }
+
+    /**
+     * Builds a merkle tree with an list of data and a leaf encoding
+     *
+     * @param listOfData list of data
+     * @param encoder encoding of the elements
+     */
+    public MerkleTree(List<T> listOfData, LeafEncoder<? super T> encoder) {
+        this(encoder); //build lists
         //save data
         elements.addAll(listOfData);
-        //calculate list of hash of elements
-        List<byte[]> hashT = new ArrayList<>();
-        for (T elem : listOfData) {
-            //convert T to byte arrays
-            //hash byte array
-            hashT.add(getHashValue(objectToBytes(elem)));
-        }
+        buildLevels();
+    }
+
+    /**
+     * builds all the levels of the tree from the elements
+     */
+    private void buildLevels() {
+        //reserve the exact size of the tree
+        allocate(elements.size());
+        //encode T to byte arrays and hash byte array (in parallel in big lists)
+        hashLevel(0, elements.size(), i -> leafHash(elements.get(i)));
         //build merkle tree
-        makeTree(hashT);
+        makeLevels();
+    }
+
+    /**
+     * builds the levels of a tree loaded from its elements and root, on the
+     * first request that needs them
+     *
+     * @throws IllegalStateException if the elements do not match the saved
+     * root
+     */
+    private synchronized void ensureLevels() {
+        if (hashes != null) {
+            return;
+        }
+        byte[] expected = savedRoot;
+        buildLevels();
+        savedRoot = null;
+        if (expected != null && !equalsHash(levels(elements.size()) - 1, 0, expected)) {
+            hashes = null;
+            savedRoot = expected;
+            throw new IllegalStateException("Merkle Error: the elements do not match the saved root");
+        }
+    }
+
+    /**
+     * verify if the elements of the tree build a root (builds the levels of a
+     * tree loaded without them)
+     *
+     * @param root expected root (ex: merkle root of the block)
+     * @return true if the root of the elements is the same
+     */
+    public boolean isRootValid(byte[] root) {
+        try {
+            ensureLevels();
+        } catch (IllegalStateException ex) {
+            return false;
+        }
+        return !elements.isEmpty() && equalsHash(getLevels() - 1, 0, root);
+    }
+
+    /**
+     * root saved with the tree, checked before the levels are built
+     *
+     * @param root expected root (ex: merkle root of the block)
+     * @return false if the tree was loaded with a different root
+     */
+    boolean matchesSavedRoot(byte[] root) {
+        byte[] saved = savedRoot;
+        return saved == null || Arrays.equals(saved, root);
     }
 
     /**
      * Builds an empty merkle tree
      */
     public MerkleTree() {
+        this(StandardLeafEncoder.CANONICAL);
+    }
+
+    /**
+     * Builds an empty merkle tree with a leaf encoding
+     *
+     * @param encoder encoding of the elements
+     */
+    public MerkleTree(LeafEncoder<? super T> encoder) {
         //build lists
-        hashTree = new ArrayList<>();
         elements = new ArrayList<>();
+        hashes = new byte[0];
+        this.encoder = encoder;
+    }
+
+    /**
+     * encoding of the leafs
+     *
+     * @return the encoder (Java serialization for trees saved before the
+     * canonical encoding)
+     */
+    public LeafEncoder<? super T> getLeafEncoder() {
+        return encoder != null ? encoder : StandardLeafEncoder.SERIALIZED;
+    }
+
+    /**
+     * hash of the leaf of an element
+     *
+     * @param elem element
+     * @return hash of the encoded element
+     */
+    public byte[] leafHash(T elem) {
+        return getHashValue(getLeafEncoder().encode(elem));
     }
 
     /**
@@ -92,17 +216,22 @@ public final class MerkleTree<T> implements Serializable {
      * @return root of tree
      */
     public byte[] getRoot() {
+        byte[] saved = savedRoot;
+        if (saved != null) {
+            //levels not built yet
+            return saved.clone();
+        }
         //top o list
-        return hashTree.get(0).get(0);
+        return getHash(0, 0);
     }
 
     /**
-     * gets the merkle tree
+     * gets the merkle tree (a copy of the levels, root first)
      *
      * @return tree
      */
     public List<List<byte[]>> getMerkleTree() {
-        return hashTree;
+        return getHashTree();
     }
 
     /**
@@ -114,8 +243,144 @@ public final class MerkleTree<T> implements Serializable {
         return elements;
     }
 
+    /**
+     * gets a copy of the levels of the tree (level 0 is the root)
+     *
+     * @return list of levels
+     */
     public List<List<byte[]>> getHashTree() {
-        return hashTree;
+        List<List<byte[]>> tree = new ArrayList<>();
+        for (int level = 0; level < getLevels(); level++) {
+            List<byte[]> list = new ArrayList<>();
+            for (int index = 0; index < getLevelSize(level); index++) {
+                list.add(getHash(level, index));
+            }
+            tree.add(list);
+        }
+        return tree;
+    }
+
+    //::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    //:::::::::::::::::::::::::::   F L A T   S T O R A G E   :::::::::::::::::
+    ///////////////////////////////////////////////////////////////////////////
+    /**
+     * number of levels of the tree
+     *
+     * @return levels (0 if the tree is empty)
+     */
+    public int getLevels() {
+        return levels(elements.size());
+    }
+
+    /**
+     * number of hashs in a level
+     *
+     * @param level level (0 is the root)
+     * @return number of hashs
+     */
+    public int getLevelSize(int level) {
+        return levelSize(elements.size(), getLevels() - 1 - level);
+    }
+
+    /**
+     * hash of a node
+     *
+     * @param level level (0 is the root)
+     * @param index index in the level
+     * @return copy of the hash
+     */
+    public byte[] getHash(int level, int index) {
+        ensureLevels();
+        if (level < 0 || level >= getLevels() || index < 0 || index >= getLevelSize(level)) {
+            throw new IndexOutOfBoundsException("Merkle Error: no hash at level " + level + " index " + index);
+        }
+        int pos = position(getLevels() - 1 - level, index);
+        return Arrays.copyOfRange(hashes, pos, pos + HASH_SIZE);
+    }
+
+    /**
+     * number of levels of a tree with n leafs
+     */
+    static int levels(int n) {
+        return n == 0 ? 0 : 33 - Integer.numberOfLeadingZeros(n - 1);
+    }
+
+    /**
+     * number of nodes in a level counted from the leafs (ceil(n / 2^height))
+     */
+    static int levelSize(int n, int height) {
+        return n == 0 ? 0 : ((n - 1) >> height) + 1;
+    }
+
+    /**
+     * position in the array of a node (level counted from the leafs)
+     */
+    private int position(int height, int index) {
+        return (offsets[height] + index) * HASH_SIZE;
+    }
+
+    /**
+     * calculates the first node of each level for the capacity
+     *
+     * @return number of nodes of the tree
+     */
+    private int computeOffsets() {
+        offsets = new int[levels(capacity) + 1];
+        for (int h = 1; h < offsets.length; h++) {
+            offsets[h] = offsets[h - 1] + levelSize(capacity, h - 1);
+        }
+        return offsets[offsets.length - 1];
+    }
+
+    /**
+     * reserves an empty array for a tree with a number of leafs
+     *
+     * @param leafs capacity in leafs
+     */
+    private void allocate(int leafs) {
+        savedRoot = null;
+        capacity = leafs;
+        hashes = new byte[computeOffsets() * HASH_SIZE];
+        leafIndex = null;
+    }
+
+    /**
+     * doubles the capacity, copying the levels of the current leafs
+     */
+    private void grow() {
+        byte[] old = hashes;
+        int oldCapacity = capacity;
+        int n = elements.size();
+        allocate(Math.max(1, capacity * 2));
+        int from = 0;
+        for (int h = 0; h < levels(n); h++) {
+            System.arraycopy(old, from, hashes, position(h, 0), levelSize(n, h) * HASH_SIZE);
+            from += levelSize(oldCapacity, h) * HASH_SIZE;
+        }
+    }
+
+    /**
+     * copies a hash to a node
+     */
+    private void store(int height, int index, byte[] hash) {
+        if (hash.length != HASH_SIZE) {
+            throw new IllegalStateException("Merkle Error: invalid hash size " + hash.length);
+        }
+        System.arraycopy(hash, 0, hashes, position(height, index), HASH_SIZE);
+    }
+
+    /**
+     * hash of the children of a node
+     *
+     * @param height level of the children (counted from the leafs)
+     * @param index index of the parent
+     * @return hash(left + right) or hash(left) if there is no right node
+     */
+    private byte[] parentHash(int height, int index) {
+        int pos = position(height, index * 2);
+        // left and right are contiguous in the array
+        int size = index * 2 + 1 < levelSize(elements.size(), height) ? 2 * HASH_SIZE : HASH_SIZE;
+        return getHashValue(Arrays.copyOfRange(hashes, pos, pos + size));
     }
 
     /**
@@ -124,30 +389,83 @@ public final class MerkleTree<T> implements Serializable {
      * @param hashList list of hashs
      */
     public void makeTree(List<byte[]> hashList) {
-        //add hashlist to the beginning of tree
-        hashTree.add(0, hashList);
-        //top of tree -> terminate
-        if (hashList.size() <= 1) {
-            return;
+        if (hashList.size() != elements.size()) {
+            throw new IllegalArgumentException("Merkle Error: " + hashList.size() + " hashs for " + elements.size() + " elements");
+        }
+        allocate(hashList.size());
+        //add hashlist to the bottom of tree
+        for (int i = 0; i < hashList.size(); i++) {
+            store(0, i, hashList.get(i));
+        }
+        makeLevels();
+    }
+
+    /**
+     * builds the levels above the leafs
+     */
+    private void makeLevels() {
+        //until the top of tree
+        for (int h = 1; h < getLevels(); h++) {
+            int child = h - 1;
+            //new level - iterate the level below 2 by 2
+            hashLevel(h, levelSize(elements.size(), h), index -> parentHash(child, index));
+        }
+    }
+
+    /**
+     * calculates the hashs of a level
+     * <p>
+     * Levels with {@link #PARALLEL_THRESHOLD} or more hashs are split in
+     * fork/join tasks of {@link #PARALLEL_GRAIN} hashs; each task writes its
+     * own positions, so the result is the same of the sequential loop.
+     *
+     * @param height level (counted from the leafs)
+     * @param size number of hashs
+     * @param hash function that calculates the hash of an index
+     */
+    private void hashLevel(int height, int size, IntFunction<byte[]> hash) {
+        if (size < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < size; i++) {
+                store(height, i, hash.apply(i));
+            }
+        } else {
+            ForkJoinPool.commonPool().invoke(new HashTask(this, height, hash, 0, size));
+        }
+    }
+
+    /**
+     * fork/join task that calculates the hashs of [from, to[
+     */
+    private static final class HashTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 202610181612L;
+
+        private final MerkleTree<?> tree;
+        private final int height;
+        private final IntFunction<byte[]> hash;
+        private final int from;
+        private final int to;
+
+        HashTask(MerkleTree<?> tree, int height, IntFunction<byte[]> hash, int from, int to) {
+            this.tree = tree;
+            this.height = height;
+            this.hash = hash;
+            this.from = from;
+            this.to = to;
         }
-        //new level
-        List<byte[]> newLevel = new ArrayList<>();
-        //iterate list 2 by 2
-        for (int i = 0; i < hashList.size(); i += 2) {
-            //first element
-            byte[] data = hashList.get(i);
-            //if have another element
-            if (i + 1 < hashList.size()) {
-                //concatenate element    
-                data = concatenate(data, hashList.get(i + 1));
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_GRAIN) {
+                for (int i = from; i < to; i++) {
+                    tree.store(height, i, hash.apply(i));
+                }
+                return;
             }
-            //calculate hash od the elements
-            byte[] hash = getHashValue(data);
-            //add hash to the new leval
-            newLevel.add(hash);
+            int middle = (from + to) >>> 1;
+            invokeAll(new HashTask(tree, height, hash, from, middle),
+                    new HashTask(tree, height, hash, middle, to));
         }
-        //call the makeTree with new level
-        makeTree(newLevel);
     }
 
     //::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
@@ -159,54 +477,26 @@ public final class MerkleTree<T> implements Serializable {
      * @param newData new data
      */
     public void add(T newData) {
-        //if tree is empty
-        if (hashTree.isEmpty()) {
-            //create first level
-            hashTree.add(new ArrayList<>());
+        ensureLevels();
+        //reserve space (doubles the capacity)
+        if (elements.size() == capacity) {
+            grow();
         }
         //save data in elements list
         this.elements.add(newData);
-
-        int level = hashTree.size() - 1;
         //convert new data to byte array
         //calculate hash o byte array
         //add hash of new data to the last level
-        hashTree.get(level).add(getHashValue(objectToBytes(newData)));
-        //until the top of tree
-        while (level > 0) {
-            //number of elementos in level
-            int sizeOfLevel = hashTree.get(level).size();
-            //last element            
-            byte[] dataHash = hashTree.get(level).get(sizeOfLevel - 1);
-            // if size is even - replace the top element             
-            if (sizeOfLevel % 2 == 0) {
-                //concatenate the two last hashs
-                dataHash = concatenate(hashTree.get(level).get(sizeOfLevel - 2), dataHash);
-                //REPLACE the element in top                 
-                // top = level.size / 2
-                hashTree.get(level - 1).set((sizeOfLevel - 1) / 2, getHashValue(dataHash));
-            } //if size is odd and exists the level                           
-            else if (hashTree.get(level - 1).size() < sizeOfLevel / 2.0) {
-                //ADD the hash element in the top
-                hashTree.get(level - 1).add((sizeOfLevel - 1) / 2, getHashValue(dataHash));
-            } else {
-                //REPLACE the hash element in the top
-                hashTree.get(level - 1).set((sizeOfLevel - 1) / 2, getHashValue(dataHash));
-            }
-            //next level (top)
-            level--;
+        int index = elements.size() - 1;
+        store(0, index, leafHash(newData));
+        if (leafIndex != null) {
+            leafIndex.putIfAbsent(leafKey(index), index);
         }
-
-        //create a new level if necessary
-        if (hashTree.get(0).size() > 1) { //las level has two elements
-            //concatenate elements
-            //calculate hash
-            byte[] hash = getHashValue(concatenate(hashTree.get(0).get(0), hashTree.get(0).get(1)));
-            //create list with the hash
-            List<byte[]> lst = new ArrayList<>();
-            lst.add(hash);
-            //add list to the top
-            hashTree.add(0, lst);
+        //until the top of tree (a new top level is created when needed)
+        for (int h = 1; h < getLevels(); h++) {
+            index /= 2;
+            //REPLACE or ADD the element in top
+            store(h, index, parentHash(h - 1, index));
         }
     }
 
@@ -220,12 +510,189 @@ public final class MerkleTree<T> implements Serializable {
         //list of proofs
         List<byte[]> proof = new ArrayList<>();
         //index of element
-        int index = elements.indexOf(data);
+        int index = indexOf(data);
         if (index < 0) { //element not found
             return proof; // empty proof
         }
         //calculate proof
-        return getProof(index, hashTree.size() - 1, proof);
+        return getProof(index, getLevels() - 1, proof);
+    }
+
+    /**
+     * calculate the proff of the element in an index
+     *
+     * @param index index of the element
+     * @return list of proofs
+     */
+    public List<byte[]> getProofAt(int index) {
+        if (index < 0 || index >= elements.size()) {
+            throw new IndexOutOfBoundsException("Merkle Error: no element at index " + index);
+        }
+        return getProof(index, getLevels() - 1, new ArrayList<>());
+    }
+
+    /**
+     * calculate the proofs of all the elements in one pass
+     * <p>
+     * Each hash of the tree is copied once and shared by the proofs that use
+     * it, so the cost is the size of the proofs: O(N log N).
+     *
+     * @return list of proofs (by index of the element)
+     */
+    public List<List<byte[]>> getProofs() {
+        ensureLevels();
+        int n = elements.size();
+        List<List<byte[]>> proofs = new ArrayList<>(n);
+        if (n == 0) {
+            return proofs;
+        }
+        int levels = getLevels();
+        //copy each node once
+        byte[][][] nodes = new byte[levels][][];
+        for (int h = 0; h < levels; h++) {
+            nodes[h] = new byte[levelSize(n, h)][];
+            for (int i = 0; i < nodes[h].length; i++) {
+                int pos = position(h, i);
+                nodes[h][i] = Arrays.copyOfRange(hashes, pos, pos + HASH_SIZE);
+            }
+        }
+        byte[] root = nodes[levels - 1][0];
+        for (int leaf = 0; leaf < n; leaf++) {
+            List<byte[]> proof = new ArrayList<>(2 * levels - 1);
+            int index = leaf;
+            //same order of getProof: [ even , odd ] from the leafs to the root
+            for (int h = 0; h < levels - 1; h++) {
+                int left = index & ~1;
+                proof.add(nodes[h][left]);
+                if (left + 1 < nodes[h].length) {
+                    proof.add(nodes[h][left + 1]);
+                }
+                index /= 2;
+            }
+            proof.add(root);
+            proofs.add(proof);
+        }
+        return proofs;
+    }
+
+    /**
+     * calculate the compact proof of the element
+     *
+     * @param data element
+     * @return the proof, or null if the element is not in the tree
+     */
+    public MerkleProof getMerkleProof(T data) {
+        int index = indexOf(data);
+        return index < 0 ? null : getMerkleProof(index);
+    }
+
+    /**
+     * calculate the compact proof of the element in an index: the hash of the
+     * sibling in each level (or a lonely bit if there is no sibling)
+     *
+     * @param index index of the element
+     * @return the proof
+     */
+    public MerkleProof getMerkleProof(int index) {
+        int n = elements.size();
+        if (index < 0 || index >= n) {
+            throw new IndexOutOfBoundsException("Merkle Error: no element at index " + index);
+        }
+        ensureLevels();
+        int levels = getLevels() - 1;
+        byte[] siblings = new byte[levels * HASH_SIZE];
+        int count = 0;
+        long lonely = 0;
+        for (int h = 0, i = index; h < levels; h++, i /= 2) {
+            int sibling = i ^ 1;
+            if (sibling < levelSize(n, h)) {
+                System.arraycopy(hashes, position(h, sibling), siblings, count * HASH_SIZE, HASH_SIZE);
+                count++;
+            } else {
+                lonely |= 1L << h;
+            }
+        }
+        return new MerkleProof(index, levels, lonely, Arrays.copyOf(siblings, count * HASH_SIZE));
+    }
+
+    /**
+     * calculate the compact proofs of all the elements
+     *
+     * @return list of proofs (by index of the element)
+     */
+    public List<MerkleProof> getMerkleProofs() {
+        List<MerkleProof> proofs = new ArrayList<>(elements.size());
+        for (int i = 0; i < elements.size(); i++) {
+            proofs.add(getMerkleProof(i));
+        }
+        return proofs;
+    }
+
+    /**
+     * calculate one proof for several elements
+     *
+     * @param data elements
+     * @return the proof (for the elements sorted by index), or null if an
+     * element is not in the tree
+     */
+    public MerkleMultiProof getMultiProof(List<T> data) {
+        int[] indexes = new int[data.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = indexOf(data.get(i));
+            if (indexes[i] < 0) {
+                return null;
+            }
+        }
+        return getMultiProof(indexes);
+    }
+
+    /**
+     * calculate one proof for the elements in several indexes: the hashes
+     * shared by the paths to the root are sent and computed only once
+     *
+     * @param indexes indexes of the elements (any order, repeated are ignored)
+     * @return the proof (for the indexes sorted)
+     */
+    public MerkleMultiProof getMultiProof(int... indexes) {
+        int[] sorted = Arrays.stream(indexes).sorted().distinct().toArray();
+        if (sorted.length == 0 || sorted[0] < 0 || sorted[sorted.length - 1] >= elements.size()) {
+            throw new IndexOutOfBoundsException("Merkle Error: invalid indexes " + Arrays.toString(indexes));
+        }
+        ensureLevels();
+        return MerkleMultiProof.build(elements.size(), sorted, (height, index) -> {
+            int pos = position(height, index);
+            return Arrays.copyOfRange(hashes, pos, pos + HASH_SIZE);
+        });
+    }
+
+    /**
+     * index of an element, found by the hash of its leaf (O(1) instead of a
+     * linear search with equals)
+     *
+     * @param data element
+     * @return index of the first leaf with the same encoding, or -1
+     */
+    public int indexOf(T data) {
+        if (elements.isEmpty()) {
+            return -1;
+        }
+        ensureLevels();
+        if (leafIndex == null) {
+            Map<ByteBuffer, Integer> map = new HashMap<>(elements.size() * 2);
+            for (int i = 0; i < elements.size(); i++) {
+                map.putIfAbsent(leafKey(i), i);
+            }
+            leafIndex = map;
+        }
+        Integer index = leafIndex.get(ByteBuffer.wrap(leafHash(data)));
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * key of a leaf in the index (view of the array, without copy)
+     */
+    private ByteBuffer leafKey(int index) {
+        return ByteBuffer.wrap(hashes, position(0, index), HASH_SIZE).slice();
     }
 
     /**
@@ -237,17 +704,17 @@ public final class MerkleTree<T> implements Serializable {
      * @return list of proofs
      */
     private List<byte[]> getProof(int index, int level, List<byte[]> proof) {
-        //add  2 elements [ even index , odd index ]  
+        //add  2 elements [ even index , odd index ]
         if (level > 0) { // not the top
             if (index % 2 == 0) { // is even [ index , index+1]
-                proof.add(hashTree.get(level).get(index));
+                proof.add(getHash(level, index));
                 //if have elements in the right
-                if (index + 1 < hashTree.get(level).size()) {
-                    proof.add(hashTree.get(level).get(index + 1));
+                if (index + 1 < getLevelSize(level)) {
+                    proof.add(getHash(level, index + 1));
                 }
             } else {// is odd [ index - 1 , index]
-                proof.add(hashTree.get(level).get(index - 1));
-                proof.add(hashTree.get(level).get(index));
+                proof.add(getHash(level, index - 1));
+                proof.add(getHash(level, index));
             }
             //calculate top level
             return getProof(index / 2, level - 1, proof);
@@ -257,7 +724,6 @@ public final class MerkleTree<T> implements Serializable {
             return proof;
         }
     }
-
     /**
      * verify the proof of an element
      *
@@ -266,11 +732,23 @@ public final class MerkleTree<T> implements Serializable {
      * @return true if the proof is valid
      */
     public static <T> boolean isProofValid(T data, List<byte[]> proof) {
+        return isProofValid(data, proof, StandardLeafEncoder.CANONICAL);
+    }
+
+    /**
+     * verify the proof of an element
+     *
+     * @param data dara
+     * @param proof list of proofs
+     * @param encoder encoding of the leafs in the tree
+     * @return true if the proof is valid
+     */
+    public static <T> boolean isProofValid(T data, List<byte[]> proof, LeafEncoder<? super T> encoder) {
 
         if (proof.isEmpty()
                 || // proof is empty
                 // hash of element is invalid
-                !Arrays.equals(proof.get(0), getHashValue(objectToBytes(data)))) {
+                !Arrays.equals(proof.get(0), getHashValue(encoder.encode(data)))) {
             return false;
         }
         //index in the proof
@@ -305,27 +783,24 @@ public final class MerkleTree<T> implements Serializable {
      * @return valid merkle tree
      */
     public boolean isValid() {
+        try {
+            ensureLevels();
+        } catch (IllegalStateException ex) {
+            return false;
+        }
         //verify the hash of elements  int the bottom of tree
         for (int i = 0; i < this.elements.size(); i++) {
-            if (!Arrays.equals(getHashValue(objectToBytes(this.elements.get(i))), (hashTree.get(hashTree.size() - 1).get(i)))) {
+            if (!equalsHash(0, i, leafHash(this.elements.get(i)))) {
                 return false;
             }
         }
         //verify the levels of the tree
-        for (int level = 0; level < hashTree.size() - 1; level++) {
-            // verify level            
-            for (int index = 0; index < hashTree.get(level).size(); index++) {
-                //left leaf
-                byte[] dataLeafs = hashTree.get(level + 1).get(index * 2);
-                //if right leaf exists
-                if (index * 2 + 1 < hashTree.get(level + 1).size()) {
-                    //concatenate hashs
-                    dataLeafs = concatenate(dataLeafs, hashTree.get(level + 1).get(index * 2 + 1));
-                }
-                //calculate hash of leafs
-                byte[] hash = getHashValue(dataLeafs);
+        for (int h = 1; h < getLevels(); h++) {
+            // verify level
+            for (int index = 0; index < levelSize(elements.size(), h); index++) {
+                //calculate hash of leafs (left + right if exists)
                 //verify the hash leafs
-                if (!Arrays.equals(hashTree.get(level).get(index), hash)) {
+                if (!equalsHash(h, index, parentHash(h - 1, index))) {
                     return false;
                 }
             }
@@ -334,10 +809,18 @@ public final class MerkleTree<T> implements Serializable {
         return true;
     }
 
+    /**
+     * compares a node with a hash (without copying the node)
+     */
+    private boolean equalsHash(int height, int index, byte[] hash) {
+        int pos = position(height, index);
+        return Arrays.equals(hashes, pos, pos + HASH_SIZE, hash, 0, hash.length);
+    }
+
     @Override
     public String toString() {
         StringBuilder txt = new StringBuilder();
-        for (List<byte[]> list : hashTree) {
+        for (List<byte[]> list : getHashTree()) {
             txt.append(byteArrayListToHex(list)).append("\n");
         }
         for (T elem : elements) {
@@ -361,6 +844,55 @@ public final class MerkleTree<T> implements Serializable {
         }
     }
 
+    /**
+     * serialized fields: the elements, the encoder and the root; the levels
+     * are rebuilt from the elements on the first request that needs them.
+     * hashes (flat array of all the levels) and hashTree (list of levels) are
+     * the formats of the trees saved before (only the root is read)
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("elements", List.class),
+        new ObjectStreamField("encoder", LeafEncoder.class),
+        new ObjectStreamField("root", byte[].class),
+        new ObjectStreamField("hashes", byte[].class),
+        new ObjectStreamField("hashTree", List.class)
+    };
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("elements", elements);
+        fields.put("encoder", encoder);
+        fields.put("root", elements.isEmpty() ? null : getRoot());
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        elements = (List<T>) fields.get("elements", null);
+        encoder = (LeafEncoder<? super T>) fields.get("encoder", null);
+        hashes = (byte[]) fields.get("hashes", null);
+        byte[] root = (byte[]) fields.get("root", null);
+        List<List<byte[]>> legacy = (List<List<byte[]>>) fields.get("hashTree", null);
+        if (root == null && hashes != null && hashes.length >= HASH_SIZE) {
+            //tree saved with the flat array: the root is the last node
+            root = Arrays.copyOfRange(hashes, hashes.length - HASH_SIZE, hashes.length);
+        } else if (root == null && legacy != null && !legacy.isEmpty() && !legacy.get(0).isEmpty()) {
+            //tree saved as a list of levels (root first)
+            root = legacy.get(0).get(0);
+        }
+        if (elements.isEmpty()) {
+            allocate(0);
+            return;
+        }
+        if (root == null || root.length != HASH_SIZE) {
+            throw new InvalidObjectException("Merkle Error: invalid saved root");
+        }
+        //the levels are rebuilt (and checked against the root) on demand
+        hashes = null;
+        savedRoot = root;
+    }
+
     //::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
     //::::::                                                           :::::::::
     //::::::                         U T I L S                         :::::::::
@@ -0,0 +1,275 @@
+package core;
+
+import java.math.BigInteger;
+import java.util.Base64;
+import utils.SHA256;
+
+/**
+ * Regras do Proof of Work partilhadas pelo {@link Block} e pelo mineiro.
+ * <p>
+ * Existem quatro versões do puzzle (guardadas em cada bloco):
+ * <ul>
+ * <li><b>{@link #VERSION_TEXT}:</b> SHA-256( Base64(header) + nonce em texto
+ * ). É o formato original - os blocos antigos continuam válidos.</li>
+ * <li><b>{@link #VERSION_BINARY}:</b> SHA-256( header || nonce (4 bytes big
+ * endian) ). O prefixo é constante, por isso o mineiro calcula o estado
+ * intermédio do SHA-256 uma única vez e só comprime o último bloco de 64 bytes
+ * em cada tentativa, sem criar objetos.</li>
+ * <li><b>{@link #VERSION_BITS}:</b> O mesmo hash da versão binária, mas a
+ * dificuldade é o número de bits a zero no início do hash (cada unidade
+ * duplica o trabalho, em vez de o multiplicar por 64).</li>
+ * <li><b>{@link #VERSION_EXTRA_NONCE}:</b> SHA-256( header || extraNonce ||
+ * nonce ), dificuldade em bits. O par (extraNonce, nonce) forma um índice de
+ * trabalho de 64 bits ({@link #work(int, int)}): quando os 2^32 nonces se
+ * esgotam, o mineiro passa para o extraNonce seguinte sem repetir
+ * tentativas.</li>
+ * </ul>
+ * Nas versões 0 e 1, a dificuldade é o número de caracteres '0' no início do
+ * hash em Base64, verificado diretamente nos bytes do hash (grupos de 6 bits).
+ * <p>
+ * <b>Consenso:</b> só duas versões entram numa cadeia - {@link #VERSION_TEXT}
+ * nos blocos migrados da cadeia antiga (enquanto o bloco anterior também a
+ * usa) e {@link #CURRENT_VERSION} em todos os blocos seguintes
+ * ({@link BlockChain#validateHeader}). As versões 1 e 2 são passos
+ * intermédios do hash e da dificuldade e não são aceites em blocos.
+ * <p>
+ * <b>Migração:</b> os blocos antigos mantêm a sua versão e continuam a ser
+ * validados com a regra original. Cada caracter Base64 tem 6 bits, por isso
+ * uma dificuldade de {@code d} caracteres equivale a {@code 6d} bits (ver
+ * {@link #toBits(int, int)}) - é este o valor herdado pelo primeiro bloco
+ * novo de uma cadeia existente.
+ * Created on 18/10/2026, 15:20:41
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public final class ProofOfWork {
+
+    /**
+     * SHA-256( Base64(header) + nonce ).
+     */
+    public static final int VERSION_TEXT = 0;
+    /**
+     * SHA-256( header || nonce ).
+     */
+    public static final int VERSION_BINARY = 1;
+    /**
+     * SHA-256( header || nonce ) com dificuldade em bits.
+     */
+    public static final int VERSION_BITS = 2;
+    /**
+     * SHA-256( header || extraNonce || nonce ) com dificuldade em bits.
+     */
+    public static final int VERSION_EXTRA_NONCE = 3;
+    /**
+     * Versão usada nos blocos novos.
+     */
+    public static final int CURRENT_VERSION = VERSION_EXTRA_NONCE;
+
+    /**
+     * Número de nonces de 32 bits.
+     */
+    public static final long NONCE_SPACE = 1L << 32;
+
+    /**
+     * Dificuldade máxima em bits (tamanho do hash).
+     */
+    public static final int MAX_BITS = 256;
+
+    /**
+     * Valor (6 bits) do caracter '0' no alfabeto Base64.
+     */
+    private static final int BASE64_ZERO = 52;
+
+    private ProofOfWork() {
+    }
+
+    /**
+     * Calcula o hash do Proof of Work de um cabeçalho.
+     *
+     * @param version Versão do puzzle.
+     * @param header Dados do cabeçalho ({@link Block#getHeaderData()}).
+     * @param nonce O nonce.
+     * @return Hash SHA-256 (32 bytes).
+     */
+    public static byte[] hash(int version, byte[] header, int nonce) {
+        return hash(version, header, 0, nonce);
+    }
+
+    /**
+     * Calcula o hash do Proof of Work de um cabeçalho.
+     *
+     * @param version Versão do puzzle.
+     * @param header Dados do cabeçalho ({@link Block#getHeaderData()}).
+     * @param extraNonce O extraNonce (ignorado antes de
+     * {@link #VERSION_EXTRA_NONCE}).
+     * @param nonce O nonce.
+     * @return Hash SHA-256 (32 bytes).
+     */
+    public static byte[] hash(int version, byte[] header, int extraNonce, int nonce) {
+        if (version == VERSION_TEXT) {
+            String txt = Base64.getEncoder().encodeToString(header) + nonce;
+            return SHA256.hash(txt.getBytes());
+        }
+        byte[] out = new byte[32];
+        SHA256 sha = kernel(version, header);
+        putWork(sha, version, work(extraNonce, nonce));
+        sha.digest(out);
+        return out;
+    }
+
+    /**
+     * Prepara o SHA-256 com estado intermédio para as versões binárias.
+     *
+     * @param version Versão do puzzle (1 ou superior).
+     * @param header Dados do cabeçalho.
+     * @return O kernel, pronto a receber o trabalho com
+     * {@link #putWork(SHA256, int, long)}.
+     */
+    public static SHA256 kernel(int version, byte[] header) {
+        if (version < VERSION_BINARY || version > VERSION_EXTRA_NONCE) {
+            throw new IllegalArgumentException("Versão de PoW desconhecida: " + version);
+        }
+        return new SHA256(header, version >= VERSION_EXTRA_NONCE ? 8 : 4);
+    }
+
+    /**
+     * Escreve um índice de trabalho no kernel (extraNonce e/ou nonce).
+     *
+     * @param sha Kernel criado com {@link #kernel(int, byte[])}.
+     * @param version Versão do puzzle.
+     * @param work Índice de trabalho.
+     */
+    public static void putWork(SHA256 sha, int version, long work) {
+        if (version >= VERSION_EXTRA_NONCE) {
+            sha.putInt(0, extraNonce(work));
+            sha.putInt(4, nonce(work));
+        } else {
+            sha.putInt(0, nonce(work));
+        }
+    }
+
+    /**
+     * @return O tamanho do espaço de trabalho da versão (2^32 nonces, ou 2^63
+     * índices com extraNonce).
+     */
+    public static long workSpace(int version) {
+        return version >= VERSION_EXTRA_NONCE ? Long.MAX_VALUE : NONCE_SPACE;
+    }
+
+    /**
+     * Índice de trabalho: extraNonce nos 32 bits altos e nonce nos baixos.
+     */
+    public static long work(int extraNonce, int nonce) {
+        return ((long) extraNonce << 32) | (nonce & 0xFFFFFFFFL);
+    }
+
+    public static int extraNonce(long work) {
+        return (int) (work >>> 32);
+    }
+
+    public static int nonce(long work) {
+        return (int) work;
+    }
+
+    /**
+     * Verifica a dificuldade de um hash segundo a regra da versão do PoW.
+     *
+     * @param version Versão do puzzle.
+     * @param hash Hash a testar.
+     * @param dificulty Dificuldade (caracteres nas versões 0 e 1, bits nas
+     * seguintes).
+     * @return true se o hash resolve o puzzle.
+     */
+    public static boolean checkDificulty(int version, byte[] hash, int dificulty) {
+        return version >= VERSION_BITS
+                ? hasLeadingZeroBits(hash, dificulty)
+                : hasBase64Zeros(hash, dificulty);
+    }
+
+    /**
+     * Converte uma dificuldade para bits (medida comum a todas as versões).
+     *
+     * @param version Versão do puzzle.
+     * @param dificulty Dificuldade na unidade da versão.
+     * @return Número de bits equivalente.
+     */
+    public static int toBits(int version, int dificulty) {
+        return version >= VERSION_BITS ? dificulty : dificulty * 6;
+    }
+
+    /**
+     * Trabalho esperado para resolver um puzzle: 2^bits hashes. A soma ao
+     * longo de uma cadeia escolhe a melhor cadeia entre ramos concorrentes.
+     *
+     * @param version Versão do puzzle.
+     * @param dificulty Dificuldade na unidade da versão.
+     * @return Número esperado de hashes.
+     */
+    public static BigInteger blockWork(int version, int dificulty) {
+        return BigInteger.ONE.shiftLeft(toBits(version, dificulty));
+    }
+
+    /**
+     * Verifica se o hash começa com {@code bits} bits a zero.
+     * <p>
+     * Os primeiros 8 bytes são comparados como um long (o caso normal); só
+     * dificuldades acima de 64 bits testam os bytes seguintes.
+     *
+     * @param hash Hash a testar.
+     * @param bits Número de bits a zero exigidos.
+     * @return true se o hash resolve o puzzle.
+     */
+    public static boolean hasLeadingZeroBits(byte[] hash, int bits) {
+        if (bits <= 0) {
+            return bits == 0;
+        }
+        if (bits > hash.length * 8 || hash.length < 8) {
+            return false;
+        }
+        long top = 0;
+        for (int i = 0; i < 8; i++) {
+            top = (top << 8) | (hash[i] & 0xFF);
+        }
+        if (bits <= 64) {
+            return top >>> (64 - bits) == 0;
+        }
+        if (top != 0) {
+            return false;
+        }
+        int full = bits >>> 3;
+        for (int i = 8; i < full; i++) {
+            if (hash[i] != 0) {
+                return false;
+            }
+        }
+        int rest = bits & 7;
+        return rest == 0 || (hash[full] & 0xFF) >>> (8 - rest) == 0;
+    }
+
+    /**
+     * Verifica a dificuldade das versões 0 e 1 diretamente nos bytes do hash.
+     * <p>
+     * Equivalente a {@code Base64(hash).startsWith("000...")}: cada caracter
+     * Base64 corresponde a 6 bits, e o caracter '0' ao valor 52.
+     *
+     * @param hash Hash a testar.
+     * @param dificulty Número de caracteres '0' exigidos.
+     * @return true se o hash resolve o puzzle.
+     */
+    public static boolean hasBase64Zeros(byte[] hash, int dificulty) {
+        if (dificulty < 0 || dificulty * 6 > hash.length * 8) {
+            return false;
+        }
+        for (int i = 0; i < dificulty; i++) {
+            int bit = i * 6;
+            int index = bit >>> 3;
+            int hi = hash[index] & 0xFF;
+            int lo = index + 1 < hash.length ? hash[index + 1] & 0xFF : 0;
+            int sextet = (((hi << 8) | lo) >>> (10 - (bit & 7))) & 0x3F;
+            if (sextet != BASE64_ZERO) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
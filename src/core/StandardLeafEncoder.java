@@ -0,0 +1,93 @@
+package core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codificações de folhas disponíveis para a {@link MerkleTree}.
+ * <p>
+ * Como enum, são serializadas pelo nome: uma árvore guardada continua a usar a
+ * mesma codificação depois de recarregada, mesmo noutra versão da aplicação.
+ * Created on 18/10/2026, 18:51:33
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public enum StandardLeafEncoder implements LeafEncoder<Object> {
+
+    /**
+     * Codificação canónica: um byte com o tipo seguido do conteúdo.
+     * <ul>
+     * <li>{@link LeafEncoder.Canonical}: os bytes do próprio elemento.</li>
+     * <li>String: UTF-8.</li>
+     * <li>byte[]: os bytes.</li>
+     * <li>Inteiros (Byte, Short, Integer, Long): 8 bytes big-endian.</li>
+     * <li>Outros elementos serializáveis: serialização Java (não é estável
+     * entre versões da classe - só para tipos sem codificação própria).</li>
+     * </ul>
+     * O byte do tipo impede que elementos de tipos diferentes com os mesmos
+     * bytes (ex: a String "A" e o array {65}) tenham a mesma folha.
+     */
+    CANONICAL {
+        @Override
+        public byte[] encode(Object element) {
+            if (element instanceof LeafEncoder.Canonical) {
+                return tagged(TAG_CANONICAL, ((LeafEncoder.Canonical) element).toCanonicalBytes());
+            }
+            if (element instanceof String) {
+                return tagged(TAG_STRING, ((String) element).getBytes(StandardCharsets.UTF_8));
+            }
+            if (element instanceof byte[]) {
+                return tagged(TAG_BYTES, (byte[]) element);
+            }
+            if (element instanceof Long || element instanceof Integer
+                    || element instanceof Short || element instanceof Byte) {
+                return tagged(TAG_INTEGER, ByteBuffer.allocate(Long.BYTES).putLong(((Number) element).longValue()).array());
+            }
+            return tagged(TAG_SERIALIZED, serialize(element));
+        }
+    },
+    /**
+     * Serialização Java do elemento ({@link MerkleTree#objectToBytes}), o
+     * formato das árvores anteriores à codificação canónica - usado para as
+     * continuar a validar.
+     */
+    SERIALIZED {
+        @Override
+        public byte[] encode(Object element) {
+            return MerkleTree.objectToBytes(element);
+        }
+    };
+
+    static final byte TAG_CANONICAL = 1;
+    static final byte TAG_STRING = 2;
+    static final byte TAG_BYTES = 3;
+    static final byte TAG_INTEGER = 4;
+    static final byte TAG_SERIALIZED = 127;
+
+    private static byte[] tagged(byte tag, byte[] data) {
+        byte[] out = new byte[data.length + 1];
+        out[0] = tag;
+        System.arraycopy(data, 0, out, 1, data.length);
+        return out;
+    }
+
+    private static byte[] serialize(Object element) {
+        if (element != null && !(element instanceof Serializable)) {
+            throw new IllegalArgumentException("Merkle Error: " + element.getClass().getName() + " cannot be encoded as a leaf.");
+        }
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream(); ObjectOutputStream out = new ObjectOutputStream(bos)) {
+            out.writeObject(element);
+            out.flush();
+            return bos.toByteArray();
+        } catch (NotSerializableException ex) {
+            throw new IllegalArgumentException("Merkle Error: " + ex.getMessage() + " cannot be encoded as a leaf.", ex);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Merkle Error: " + ex.getMessage(), ex);
+        }
+    }
+}
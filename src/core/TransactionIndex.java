@@ -0,0 +1,423 @@
+package core;
+
+import SaudeCerteira.SaudeTransaction;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import utils.SecurityUtils;
+
+/**
+ * Índice persistente das transações já registadas na Blockchain.
+ * <p>
+ * Torna {@link BlockChain#existsTransaction(byte[])} O(1) em vez de percorrer
+ * todos os blocos e todas as transações (proteção contra Replay Attacks).
+ * <ul>
+ * <li><b>Chave:</b> SHA-256 da assinatura da transação.</li>
+ * <li><b>Filtro de Bloom:</b> Responde "não existe" sem tocar na tabela - o
+ * caso normal para transações pendentes.</li>
+ * <li><b>Tabela:</b> Endereçamento aberto com os primeiros 8 bytes do hash
+ * (arrays primitivos, sem um objeto por transação). Uma coincidência é
+ * confirmada no bloco indicado, por isso a resposta é exata.</li>
+ * <li><b>Persistência:</b> Ficheiro append-only ({@code transactions.idx})
+ * atualizado a cada bloco. Se faltar ou estiver incoerente com o
+ * {@link BlockStore}, é reconstruído a partir dos blocos.</li>
+ * </ul>
+ * <b>Formato:</b> [magic][versão][blocos indexados] seguido de registos
+ * [hash da assinatura (32)][ID do bloco].
+ * Created on 18/10/2026, 14:20:03
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public class TransactionIndex {
+
+    public static final String INDEX_FILE = "transactions.idx";
+
+    static final int MAGIC = 0x54584931; // "TXI1"
+    static final int VERSION = 1;
+    static final int HEADER = 12;
+    static final int KEY_SIZE = 32;
+    static final int RECORD = KEY_SIZE + 4;
+
+    /**
+     * Número de funções de hash do filtro de Bloom e bits por entrada
+     * (~1% de falsos positivos).
+     */
+    static final int BLOOM_HASHES = 7;
+    static final int BLOOM_BITS_PER_ENTRY = 10;
+
+    private final File file;
+    private final BlockStore store;
+    private FileChannel channel;
+
+    // Tabela de endereçamento aberto (0 = posição livre)
+    private long[] keys = new long[1024];
+    private int[] blockIds = new int[1024];
+    private int count;
+
+    // Filtro de Bloom dimensionado para 'bloomCapacity' entradas
+    private long[] bloom;
+    private int bloomCapacity;
+
+    // Número de blocos já refletidos no índice
+    private int indexedBlocks;
+
+    /**
+     * Abre o índice da diretoria do armazenamento e sincroniza-o com os
+     * blocos guardados (indexa blocos em falta ou descarta blocos removidos).
+     *
+     * @param folder Diretoria dos blocos.
+     * @param store Armazenamento dos blocos (fonte para reconstrução).
+     */
+    TransactionIndex(File folder, BlockStore store) throws IOException {
+        this.file = new File(folder, INDEX_FILE);
+        this.store = store;
+        resizeBloom(1024);
+        if (!load()) {
+            rebuild();
+        }
+        if (indexedBlocks > store.size()) {
+            truncate(store.size());
+        }
+        for (int id = indexedBlocks; id < store.size(); id++) {
+            add(store.read(id));
+        }
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: CONSULTA
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    /**
+     * Verifica se uma transação com esta assinatura já foi registada.
+     *
+     * @param signature Assinatura digital da transação.
+     * @return true se já existir num bloco da cadeia.
+     */
+    public synchronized boolean contains(byte[] signature) {
+        if (signature == null) {
+            return false;
+        }
+        byte[] digest = digest(signature);
+        long key = key(digest);
+        // 1. Filtro de Bloom: a maioria das transações novas termina aqui
+        if (!mightContain(key)) {
+            return false;
+        }
+        // 2. Tabela: confirmar cada bloco com a mesma chave
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key && blockContains(blockIds[i], signature)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Número de transações indexadas.
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    private boolean blockContains(int blockId, byte[] signature) {
+        if (blockId >= store.size()) {
+            return false;
+        }
+        try {
+            for (Object o : store.read(blockId).getData().getElements()) {
+                if (o instanceof SaudeTransaction t && Arrays.equals(t.getSignature(), signature)) {
+                    return true;
+                }
+            }
+        } catch (IOException ex) {
+            System.err.println("Transaction index: " + ex.getMessage());
+        }
+        return false;
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: ATUALIZAÇÃO
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    /**
+     * Indexa as transações de um bloco acabado de guardar.
+     *
+     * @param block Bloco com ID igual ao número de blocos indexados.
+     * @throws IOException Erro de escrita.
+     */
+    public synchronized void add(Block block) throws IOException {
+        if (block.getID() != indexedBlocks) {
+            throw new IOException("Transaction index: expected block " + indexedBlocks + " but got " + block.getID());
+        }
+        // Todos os registos do bloco numa única escrita
+        ByteBuffer records = ByteBuffer.allocate(block.getData().getElements().size() * RECORD);
+        for (Object o : block.getData().getElements()) {
+            if (o instanceof SaudeTransaction t && t.getSignature() != null) {
+                byte[] digest = digest(t.getSignature());
+                records.put(digest).putInt(block.getID());
+                insert(key(digest), block.getID());
+            }
+        }
+        records.flip();
+        long position = channel.size();
+        while (records.hasRemaining()) {
+            position += channel.write(records, position);
+        }
+        indexedBlocks++;
+        writeHeader();
+    }
+
+    /**
+     * Remove do índice as transações dos blocos a partir de uma altura. Só os
+     * registos removidos são lidos e apagados da tabela (O(transações
+     * removidas)); o filtro de Bloom mantém os bits, o que só gera falsos
+     * positivos que a tabela descarta.
+     *
+     * @param height Número de blocos a manter.
+     * @throws IOException Erro de escrita.
+     */
+    public synchronized void truncate(int height) throws IOException {
+        if (height >= indexedBlocks) {
+            return;
+        }
+        // Os registos estão por ordem de bloco: pesquisa binária pelo
+        // primeiro registo removido e corte do ficheiro nesse ponto
+        ByteBuffer id = ByteBuffer.allocate(4);
+        long low = 0;
+        long high = (channel.size() - HEADER) / RECORD;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            id.clear();
+            channel.read(id, HEADER + mid * RECORD + KEY_SIZE);
+            if (id.getInt(0) >= height) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        // apagar da tabela as chaves dos registos removidos
+        ByteBuffer buf = ByteBuffer.allocate(4096 * RECORD);
+        byte[] digest = new byte[KEY_SIZE];
+        long end = channel.size();
+        for (long position = HEADER + low * RECORD; position < end;) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), end - position));
+            while (buf.hasRemaining()) {
+                int read = channel.read(buf, position + buf.position());
+                if (read < 0) {
+                    break;
+                }
+            }
+            position += buf.position();
+            buf.flip();
+            while (buf.remaining() >= RECORD) {
+                buf.get(digest);
+                remove(key(digest), buf.getInt());
+            }
+        }
+        channel.truncate(HEADER + low * RECORD);
+        indexedBlocks = height;
+        writeHeader();
+    }
+
+    /**
+     * Reconstrói o índice a partir de todos os blocos guardados.
+     *
+     * @throws IOException Erro de leitura ou escrita.
+     */
+    public synchronized void rebuild() throws IOException {
+        close();
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        clearTable(1024);
+        indexedBlocks = 0;
+        writeHeader();
+        for (int id = 0; id < store.size(); id++) {
+            add(store.read(id));
+        }
+    }
+
+    synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: PERSISTÊNCIA
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    /**
+     * Lê o ficheiro do índice para a tabela em memória.
+     *
+     * @return false se o ficheiro não existir ou for inválido.
+     */
+    private boolean load() throws IOException {
+        if (!file.exists() || file.length() < HEADER) {
+            return false;
+        }
+        close();
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            BlockStore.release(buf);
+            return false;
+        }
+        indexedBlocks = buf.getInt();
+        int records = buf.remaining() / RECORD;
+        clearTable(Math.max(1024, Integer.highestOneBit(Math.max(records, 1)) * 4));
+        byte[] digest = new byte[KEY_SIZE];
+        for (int i = 0; i < records; i++) {
+            buf.get(digest);
+            int blockId = buf.getInt();
+            if (blockId >= indexedBlocks) {
+                records = i; // bloco escrito mas cabeçalho não atualizado
+                break;
+            }
+            insert(key(digest), blockId);
+        }
+        // descartar registos incompletos no fim (escrita interrompida);
+        // o mapa é libertado antes de cortar o ficheiro
+        BlockStore.release(buf);
+        channel.truncate(HEADER + (long) records * RECORD);
+        return true;
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(MAGIC).putInt(VERSION).putInt(indexedBlocks).flip();
+        channel.write(header, 0);
+        channel.force(false);
+    }
+
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    // :: TABELA E FILTRO DE BLOOM
+    // ::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
+    private void insert(long key, int blockId) {
+        if ((count + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        blockIds[i] = blockId;
+        count++;
+        if (count > bloomCapacity) {
+            resizeBloom(bloomCapacity * 2);
+        } else {
+            addToBloom(key);
+        }
+    }
+
+    /**
+     * Apaga uma entrada da tabela e recua as entradas seguintes da mesma
+     * sequência (endereçamento aberto linear, sem marcas de apagado).
+     */
+    private void remove(long key, int blockId) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != 0 && (keys[i] != key || blockIds[i] != blockId)) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == 0) {
+            return;
+        }
+        for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+            int home = slot(keys[j], mask);
+            // a entrada em j fica se a sua posição inicial está em ]i, j]
+            boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!stays) {
+                keys[i] = keys[j];
+                blockIds[i] = blockIds[j];
+                i = j;
+            }
+        }
+        keys[i] = 0;
+        blockIds[i] = 0;
+        count--;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldIds = blockIds;
+        keys = new long[capacity];
+        blockIds = new int[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != 0) {
+                int i = slot(oldKeys[j], mask);
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                blockIds[i] = oldIds[j];
+            }
+        }
+    }
+
+    private void clearTable(int capacity) {
+        keys = new long[capacity];
+        blockIds = new int[capacity];
+        count = 0;
+        resizeBloom(Math.max(1024, capacity / 2));
+    }
+
+    private void resizeBloom(int capacity) {
+        bloomCapacity = capacity;
+        bloom = new long[(int) Math.max(1, (long) capacity * BLOOM_BITS_PER_ENTRY / 64)];
+        for (long key : keys) {
+            if (key != 0) {
+                addToBloom(key);
+            }
+        }
+    }
+
+    private void addToBloom(long key) {
+        long bits = (long) bloom.length * 64;
+        int h1 = (int) key;
+        int h2 = (int) (key >>> 32);
+        for (int k = 0; k < BLOOM_HASHES; k++) {
+            long bit = Math.floorMod(h1 + (long) k * h2, bits);
+            bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private boolean mightContain(long key) {
+        long bits = (long) bloom.length * 64;
+        int h1 = (int) key;
+        int h2 = (int) (key >>> 32);
+        for (int k = 0; k < BLOOM_HASHES; k++) {
+            long bit = Math.floorMod(h1 + (long) k * h2, bits);
+            if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int slot(long key, int mask) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    /**
+     * Chave da tabela: primeiros 8 bytes do hash (nunca 0, reservado para
+     * posições livres).
+     */
+    private static long key(byte[] digest) {
+        long key = ByteBuffer.wrap(digest).getLong();
+        return key == 0 ? 1 : key;
+    }
+
+    private static byte[] digest(byte[] signature) {
+        try {
+            return SecurityUtils.calculateHash(signature, "SHA-256");
+        } catch (Exception ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+}
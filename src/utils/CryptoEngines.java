@@ -0,0 +1,165 @@
+package utils;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.util.HashMap;
+import java.util.Map;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+
+/**
+ * Per thread cache of the crypto engines (MessageDigest, Signature, Cipher
+ * and SecretKeyFactory).
+ * <p>
+ * {@code getInstance} looks up the providers and builds a new engine in every
+ * call; in the hash of the merkle trees, the signatures of the transactions
+ * and the encryption of the keys that is most of the cost of small messages.
+ * Each thread keeps one engine per algorithm (and provider) and reuses it.
+ * <p>
+ * The engines are not thread safe and are shared by all the code of the
+ * thread: use them only inside one method call (get, init/update, finish)
+ * and never keep them, ex: in a stream returned to the caller.
+ * Created on 18/10/2026, 21:04:37
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public final class CryptoEngines {
+
+    private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, Signature>> SIGNATURES = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, Cipher>> CIPHERS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, SecretKeyFactory>> KEY_FACTORIES = ThreadLocal.withInitial(HashMap::new);
+
+    private CryptoEngines() {
+    }
+
+    /**
+     * message digest of the thread, ready to use (reset)
+     *
+     * @param algorithm algorithm (ex: SHA3-256)
+     * @return digest
+     * @throws GeneralSecurityException if the algorithm does not exist
+     */
+    public static MessageDigest digest(String algorithm) throws GeneralSecurityException {
+        return digest(algorithm, null);
+    }
+
+    /**
+     * message digest of the thread, ready to use (reset)
+     *
+     * @param algorithm algorithm (ex: SHA3-256)
+     * @param provider provider (null for the default)
+     * @return digest
+     * @throws GeneralSecurityException if the algorithm does not exist
+     */
+    public static MessageDigest digest(String algorithm, String provider) throws GeneralSecurityException {
+        Map<String, MessageDigest> cache = DIGESTS.get();
+        String key = key(algorithm, provider);
+        MessageDigest md = cache.get(key);
+        if (md == null) {
+            md = provider == null ? MessageDigest.getInstance(algorithm) : MessageDigest.getInstance(algorithm, provider);
+            cache.put(key, md);
+        } else {
+            // a previous call may have stopped after an update
+            md.reset();
+        }
+        return md;
+    }
+
+    /**
+     * signature engine of the thread (must be initialized with initSign or
+     * initVerify)
+     *
+     * @param algorithm algorithm (ex: SHA256withECDSA)
+     * @return signature
+     * @throws GeneralSecurityException if the algorithm does not exist
+     */
+    public static Signature signature(String algorithm) throws GeneralSecurityException {
+        return signature(algorithm, null);
+    }
+
+    /**
+     * signature engine of the thread (must be initialized with initSign or
+     * initVerify)
+     *
+     * @param algorithm algorithm (ex: SHA256withECDSA)
+     * @param provider provider (null for the default)
+     * @return signature
+     * @throws GeneralSecurityException if the algorithm does not exist
+     */
+    public static Signature signature(String algorithm, String provider) throws GeneralSecurityException {
+        Map<String, Signature> cache = SIGNATURES.get();
+        String key = key(algorithm, provider);
+        Signature sign = cache.get(key);
+        if (sign == null) {
+            sign = provider == null ? Signature.getInstance(algorithm) : Signature.getInstance(algorithm, provider);
+            cache.put(key, sign);
+        }
+        return sign;
+    }
+
+    /**
+     * cipher of the thread (must be initialized with init)
+     *
+     * @param transformation transformation (ex: AES or RSA)
+     * @return cipher
+     * @throws GeneralSecurityException if the transformation does not exist
+     */
+    public static Cipher cipher(String transformation) throws GeneralSecurityException {
+        return cipher(transformation, null);
+    }
+
+    /**
+     * cipher of the thread (must be initialized with init)
+     *
+     * @param transformation transformation (ex: AES or RSA)
+     * @param provider provider (null for the default)
+     * @return cipher
+     * @throws GeneralSecurityException if the transformation does not exist
+     */
+    public static Cipher cipher(String transformation, String provider) throws GeneralSecurityException {
+        Map<String, Cipher> cache = CIPHERS.get();
+        String key = key(transformation, provider);
+        Cipher cipher = cache.get(key);
+        if (cipher == null) {
+            cipher = provider == null ? Cipher.getInstance(transformation) : Cipher.getInstance(transformation, provider);
+            cache.put(key, cipher);
+        }
+        return cipher;
+    }
+
+    /**
+     * secret key factory of the thread
+     *
+     * @param algorithm algorithm (ex: PBKDF2WithHmacSHA256)
+     * @return key factory
+     * @throws GeneralSecurityException if the algorithm does not exist
+     */
+    public static SecretKeyFactory secretKeyFactory(String algorithm) throws GeneralSecurityException {
+        return secretKeyFactory(algorithm, null);
+    }
+
+    /**
+     * secret key factory of the thread
+     *
+     * @param algorithm algorithm (ex: PBKDF2WithHmacSHA256)
+     * @param provider provider (null for the default)
+     * @return key factory
+     * @throws GeneralSecurityException if the algorithm does not exist
+     */
+    public static SecretKeyFactory secretKeyFactory(String algorithm, String provider) throws GeneralSecurityException {
+        Map<String, SecretKeyFactory> cache = KEY_FACTORIES.get();
+        String key = key(algorithm, provider);
+        SecretKeyFactory factory = cache.get(key);
+        if (factory == null) {
+            factory = provider == null ? SecretKeyFactory.getInstance(algorithm) : SecretKeyFactory.getInstance(algorithm, provider);
+            cache.put(key, factory);
+        }
+        return factory;
+    }
+
+    private static String key(String algorithm, String provider) {
+        return provider == null ? algorithm : algorithm + "@" + provider;
+    }
+}
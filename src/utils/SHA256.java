@@ -0,0 +1,197 @@
+package utils;
+
+/**
+ * SHA-256 with midstate reuse, for hashing many messages that share the same
+ * prefix (proof of work).
+ * <p>
+ * The message has the form {@code prefix || variable}, where the variable part
+ * has a fixed length (ex: the nonce). The compression of the complete 64 byte
+ * blocks of the prefix is done once in the constructor (midstate); the final
+ * blocks, already padded, are kept in a buffer where only the variable bytes
+ * change. Each {@link #digest(byte[])} compresses only the final blocks and
+ * does not allocate memory. The rounds of the first final block that only use
+ * words before the variable bytes are also precomputed.
+ * <p>
+ * Instances are not thread safe - use one per thread.
+ * Created on 18/10/2026, 15:02:11
+ *
+ * @author aluno_25979, aluno_25946
+ */
+public final class SHA256 {
+
+    private static final int[] K = {
+        0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+        0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+        0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+        0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+        0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+        0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+        0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+        0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    private static final int[] IV = {
+        0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    // state after the complete blocks of the prefix
+    private final int[] midstate = new int[8];
+    // final blocks: rest of prefix + variable bytes + padding
+    private final byte[] tail;
+    // position of the variable bytes in the tail
+    private final int variableOffset;
+    // rounds of the first final block that do not depend on the variable bytes
+    private final int constantRounds;
+    // working variables (a..h) after the constant rounds
+    private final int[] precomputed = new int[8];
+    // working buffers (reused)
+    private final int[] w = new int[64];
+    private final int[] state = new int[8];
+
+    /**
+     * Prepares the midstate for messages {@code prefix || variable}.
+     *
+     * @param prefix constant part of the message
+     * @param variableLength number of bytes that change between digests
+     */
+    public SHA256(byte[] prefix, int variableLength) {
+        System.arraycopy(IV, 0, midstate, 0, IV.length);
+        int full = prefix.length / 64;
+        for (int i = 0; i < full; i++) {
+            compress(midstate, prefix, i * 64);
+        }
+        int rest = prefix.length - full * 64;
+        int used = rest + variableLength + 1 + 8; // data + 0x80 + length
+        tail = new byte[(used + 63) / 64 * 64];
+        System.arraycopy(prefix, full * 64, tail, 0, rest);
+        variableOffset = rest;
+        tail[rest + variableLength] = (byte) 0x80;
+        long bitLength = (long) (prefix.length + variableLength) * 8;
+        for (int i = 0; i < 8; i++) {
+            tail[tail.length - 1 - i] = (byte) (bitLength >>> (8 * i));
+        }
+        constantRounds = Math.min(rest / 4, 64);
+        System.arraycopy(midstate, 0, precomputed, 0, 8);
+        expand(tail, 0);
+        rounds(precomputed, 0, constantRounds);
+    }
+
+    /**
+     * Writes an integer (big endian) in the variable part of the message.
+     *
+     * @param position position inside the variable part
+     * @param value value to write
+     */
+    public void putInt(int position, int value) {
+        int p = variableOffset + position;
+        tail[p] = (byte) (value >>> 24);
+        tail[p + 1] = (byte) (value >>> 16);
+        tail[p + 2] = (byte) (value >>> 8);
+        tail[p + 3] = (byte) value;
+    }
+
+    /**
+     * Calculates the hash of the current message.
+     *
+     * @param out array with at least 32 bytes that receives the hash
+     */
+    public void digest(byte[] out) {
+        // first block: continue from the precomputed rounds
+        System.arraycopy(precomputed, 0, state, 0, 8);
+        expand(tail, 0);
+        rounds(state, constantRounds, 64);
+        for (int i = 0; i < 8; i++) {
+            state[i] += midstate[i];
+        }
+        for (int offset = 64; offset < tail.length; offset += 64) {
+            compress(state, tail, offset);
+        }
+        for (int i = 0; i < 8; i++) {
+            int v = state[i];
+            out[4 * i] = (byte) (v >>> 24);
+            out[4 * i + 1] = (byte) (v >>> 16);
+            out[4 * i + 2] = (byte) (v >>> 8);
+            out[4 * i + 3] = (byte) v;
+        }
+    }
+
+    /**
+     * One shot SHA-256 of an array of bytes.
+     *
+     * @param data data
+     * @return hash of data (32 bytes)
+     */
+    public static byte[] hash(byte[] data) {
+        byte[] out = new byte[32];
+        new SHA256(data, 0).digest(out);
+        return out;
+    }
+
+    /**
+     * SHA-256 compression function of one block of 64 bytes.
+     */
+    private void compress(int[] h, byte[] block, int offset) {
+        int a = h[0], b = h[1], c = h[2], d = h[3];
+        int e = h[4], f = h[5], g = h[6], hh = h[7];
+        expand(block, offset);
+        rounds(h, 0, 64);
+        h[0] += a;
+        h[1] += b;
+        h[2] += c;
+        h[3] += d;
+        h[4] += e;
+        h[5] += f;
+        h[6] += g;
+        h[7] += hh;
+    }
+
+    /**
+     * Message schedule of one block.
+     */
+    private void expand(byte[] block, int offset) {
+        for (int t = 0; t < 16; t++) {
+            int p = offset + 4 * t;
+            w[t] = (block[p] << 24) | ((block[p + 1] & 0xFF) << 16)
+                    | ((block[p + 2] & 0xFF) << 8) | (block[p + 3] & 0xFF);
+        }
+        for (int t = 16; t < 64; t++) {
+            int x = w[t - 15];
+            int y = w[t - 2];
+            int s0 = Integer.rotateRight(x, 7) ^ Integer.rotateRight(x, 18) ^ (x >>> 3);
+            int s1 = Integer.rotateRight(y, 17) ^ Integer.rotateRight(y, 19) ^ (y >>> 10);
+            w[t] = w[t - 16] + s0 + w[t - 7] + s1;
+        }
+    }
+
+    /**
+     * Rounds [from, to[ over the working variables (a..h).
+     */
+    private void rounds(int[] v, int from, int to) {
+        int a = v[0], b = v[1], c = v[2], d = v[3];
+        int e = v[4], f = v[5], g = v[6], hh = v[7];
+        for (int t = from; t < to; t++) {
+            int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+            int ch = (e & f) ^ (~e & g);
+            int t1 = hh + s1 + ch + K[t] + w[t];
+            int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+            int maj = (a & b) ^ (a & c) ^ (b & c);
+            int t2 = s0 + maj;
+            hh = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        v[0] = a;
+        v[1] = b;
+        v[2] = c;
+        v[3] = d;
+        v[4] = e;
+        v[5] = f;
+        v[6] = g;
+        v[7] = hh;
+    }
+}
@@ -39,7 +39,6 @@ import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
-import java.util.Arrays;
 import java.util.Base64;
 import java.util.IllegalFormatException;
 import java.util.Random;
@@ -339,8 +338,8 @@ public class SecurityUtils {
      */
     public static byte[] encrypt(byte[] data, Key key) throws Exception {
 
-        //criar um objecto de cifragem da chave
-        Cipher cipher = Cipher.getInstance(key.getAlgorithm());
+        //objecto de cifragem da chave (reutilizado pela thread)
+        Cipher cipher = CryptoEngines.cipher(key.getAlgorithm());
         //configurar o objecto para cifrar
         cipher.init(Cipher.ENCRYPT_MODE, key);
         //cifrar os dados
@@ -356,8 +355,8 @@ public class SecurityUtils {
      *
      */
     public static byte[] decrypt(byte[] data, Key key) throws Exception {
-        //criar um objecto de cifragem da chave
-        Cipher cipher = Cipher.getInstance(key.getAlgorithm());
+        //objecto de cifragem da chave (reutilizado pela thread)
+        Cipher cipher = CryptoEngines.cipher(key.getAlgorithm());
         //configurar o objecto para cifrar
         cipher.init(Cipher.DECRYPT_MODE, key);
         //decifrar os dados
@@ -376,8 +375,24 @@ public class SecurityUtils {
      * @throws Exception
      */
     public static Cipher createCipherPBE(int mode, String password) throws Exception {
+        //o objecto é devolvido a quem chama: não pode ser o da cache da thread
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        initCipherPBE(cipher, mode, password);
+        return cipher;
+    }
+
+    /**
+     * Inicializa um objecto de cifragem AES/CBC com a chave derivada da
+     * password
+     *
+     * @param cipher Objecto de cifragem AES/CBC/PKCS5Padding
+     * @param mode Cipher.DECRYPT_MODE ou Cipher.ENCRYPT_MODE
+     * @param password password de da cifra
+     * @throws Exception
+     */
+    private static void initCipherPBE(Cipher cipher, int mode, String password) throws Exception {
         //Criar a chave da cifra
-        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        SecretKeyFactory factory = CryptoEngines.secretKeyFactory("PBKDF2WithHmacSHA256");
         //sal da chave - deve ser aleatório e diferente para cada mensagem
         byte[] salt = password.getBytes();
         //inicializar o gerador aleatorio
@@ -389,16 +404,12 @@ public class SecurityUtils {
         SecretKey key = factory.generateSecret(spec);
         //Gerar uma chave AES
         SecretKeySpec secretKey = new SecretKeySpec(key.getEncoded(), "AES");
-        //criar Objecto de cifragem
-        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
         //Vetor de inicializacao
         byte[] iv = new byte[16];
         rnd.nextBytes(iv); // aleatorizar o vetor
         IvParameterSpec ivspec = new IvParameterSpec(iv);
         //inicializar o objeto de cifragem
         cipher.init(mode, secretKey, ivspec);
-        //retornar o Objecto de cifragem
-        return cipher;
     }
 
    
@@ -416,7 +427,8 @@ public class SecurityUtils {
      */
     public static byte[] encrypt(byte[] data, String password) throws Exception {
         //criar um objecto de cifragem da chave
-        Cipher cipher = createCipherPBE(Cipher.ENCRYPT_MODE, password);
+        Cipher cipher = CryptoEngines.cipher("AES/CBC/PKCS5Padding");
+        initCipherPBE(cipher, Cipher.ENCRYPT_MODE, password);
         //cifrar os dados
         return cipher.doFinal(data);
     }
@@ -431,7 +443,8 @@ public class SecurityUtils {
      */
     public static byte[] decrypt(byte[] data, String password) throws Exception {
         //criar um objecto de cifragem da chave
-        Cipher cipher = createCipherPBE(Cipher.DECRYPT_MODE, password);
+        Cipher cipher = CryptoEngines.cipher("AES/CBC/PKCS5Padding");
+        initCipherPBE(cipher, Cipher.DECRYPT_MODE, password);
         //cifrar os dados
         return cipher.doFinal(data);
     }
@@ -445,7 +458,8 @@ public class SecurityUtils {
      * @throws Exception
      */
     public static void writeCrypt(byte[] message, OutputStream out, Key key) throws Exception {
-        //criar a cifra
+        //criar a cifra (sem a cache da thread: a stream usa-a depois desta
+        //chamada, ver CryptoEngines)
         Cipher cipher = Cipher.getInstance(key.getAlgorithm());
         //iniciar para encriptar
         cipher.init(Cipher.ENCRYPT_MODE, key);
@@ -466,7 +480,8 @@ public class SecurityUtils {
      * @throws Exception
      */
     public static byte[] readCrypt(InputStream in, Key key) throws Exception {
-        //objecto para decifrar
+        //objecto para decifrar (sem a cache da thread: a stream fica com ele,
+        //ver CryptoEngines)
         Cipher cipher = Cipher.getInstance(key.getAlgorithm());
         cipher.init(Cipher.DECRYPT_MODE, key);
         //abertura de uma stream cifrada
@@ -480,9 +495,7 @@ public class SecurityUtils {
     ///////////////////////////////////////////////////////////////////////////
     public static byte[] calculateHash(byte[] data, String algorithm)
             throws Exception {
-        MessageDigest md = MessageDigest.getInstance(algorithm);
-        md.update(data);
-        return md.digest();
+        return CryptoEngines.digest(algorithm).digest(data);
     }
     
     public static String calculateHash(String data, String algorithm)
@@ -493,10 +506,8 @@ public class SecurityUtils {
     }
 
     public static boolean verifyHash(byte[] data, byte[] hash, String algorithm) throws Exception {
-        MessageDigest md = MessageDigest.getInstance(algorithm);
-        md.update(data);
-        byte[] trueHash = md.digest();
-        return Arrays.equals(trueHash, hash);
+        byte[] trueHash = CryptoEngines.digest(algorithm).digest(data);
+        return MessageDigest.isEqual(trueHash, hash);
     }
 
     //::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::
@@ -519,8 +530,8 @@ public class SecurityUtils {
         Signature sign;
         //verifica qual o algoritmo a ser utilizado
         switch (key.getAlgorithm()) {
-            case "RSA" -> sign = Signature.getInstance("SHA256withRSA");
-            case "EC" -> sign = Signature.getInstance("SHA256withECDSA");
+            case "RSA" -> sign = CryptoEngines.signature("SHA256withRSA");
+            case "EC" -> sign = CryptoEngines.signature("SHA256withECDSA");
             default -> //caso o algoritmo pedido não exista
                 throw new InvalidAlgorithmParameterException();
         }
@@ -548,10 +559,10 @@ public class SecurityUtils {
         //verifica qual o algoritmo a ser utilizado
         switch (key.getAlgorithm()) {
             case "RSA":
-                sign = Signature.getInstance("SHA256withRSA");
+                sign = CryptoEngines.signature("SHA256withRSA");
                 break;
             case "EC":
-                sign = Signature.getInstance("SHA256withECDSA");
+                sign = CryptoEngines.signature("SHA256withECDSA");
                 break;
             default: //caso o algoritmo pedido não exista
                 throw new InvalidAlgorithmParameterException();